@@ -0,0 +1,40 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Represents a Cloud Function that is activated by an HTTP request and completes asynchronously.
+ * Unlike {@link HttpFunction}, the request is not finished when the {@code service} method returns,
+ * but when the returned {@link CompletionStage} completes. Together with {@link
+ * HttpRequest#getBodyPublisher()} and {@link HttpResponse#writeAsync}, this lets a function process
+ * a large or slow request without holding a thread while it waits for the network.
+ */
+@FunctionalInterface
+public interface AsyncHttpFunction {
+  /**
+   * Called to start servicing an incoming HTTP request. The request and response objects remain
+   * valid until the returned stage completes. If this method throws an exception, or the returned
+   * stage completes exceptionally, then the HTTP response will have a 500 status code, unless the
+   * response has already been committed.
+   *
+   * @param request a representation of the incoming HTTP request.
+   * @param response an object that can be used to provide the corresponding HTTP response.
+   * @return a stage that completes when the function has finished with the request and response.
+   * @throws Exception if thrown, the HTTP response will have a 500 status code.
+   */
+  CompletionStage<Void> service(HttpRequest request, HttpResponse response) throws Exception;
+}
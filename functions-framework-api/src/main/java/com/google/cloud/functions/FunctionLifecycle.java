@@ -0,0 +1,68 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Optionally implemented by a function class that needs to set itself up before it handles
+ * requests, or to clean up when the server shuts down. Setup that is expensive, such as opening a
+ * connection pool or loading a model, belongs in {@link #init} rather than in the constructor or on
+ * the first request: the framework does not start serving until it has completed, so no request has
+ * to wait for it, and the time it takes is logged.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * public class Lookup implements HttpFunction, FunctionLifecycle {
+ *   private DataSource dataSource;
+ *
+ *   &#64;Override
+ *   public CompletionStage&lt;Void&gt; init() {
+ *     return CompletableFuture.runAsync(() -&gt; dataSource = createPool());
+ *   }
+ *
+ *   &#64;Override
+ *   public void close() {
+ *     dataSource.close();
+ *   }
+ *   ...
+ * }
+ * </pre>
+ */
+public interface FunctionLifecycle extends AutoCloseable {
+  /**
+   * Called once, after the function is constructed and before it is called with any request or
+   * event. The framework waits for the returned stage to complete before it starts serving. If
+   * this method throws an exception, or the stage completes exceptionally, the server does not
+   * start.
+   *
+   * @return a stage that completes when the function is ready to be called.
+   * @throws Exception if the function cannot be initialized.
+   */
+  default CompletionStage<Void> init() throws Exception {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Called once when the server shuts down, after requests in progress have finished or the
+   * shutdown grace period has expired. An exception is logged and otherwise ignored.
+   *
+   * @throws Exception if the function could not release its resources.
+   */
+  @Override
+  default void close() throws Exception {}
+}
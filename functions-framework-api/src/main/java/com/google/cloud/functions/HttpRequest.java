@@ -14,9 +14,13 @@
 
 package com.google.cloud.functions;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Flow;
 
 /** Represents the contents of an HTTP request that is being serviced by a Cloud Function. */
 public interface HttpRequest extends HttpMessage {
@@ -80,12 +84,61 @@ public interface HttpRequest extends HttpMessage {
     return Optional.of(parameters.get(0));
   }
 
+  /**
+   * Returns a publisher of the body of this request, which delivers the body as it arrives from the
+   * network without blocking a thread. The publisher accepts a single subscriber, and only calls
+   * {@code onNext} as often as the subscriber has requested. Each buffer is only valid during the
+   * call to {@code onNext}, so a subscriber that needs the bytes later must copy them.
+   *
+   * <p>This method is typically used with an {@link AsyncHttpFunction}, which can complete once the
+   * subscriber has seen the whole body.
+   *
+   * @return a publisher of the request body.
+   * @throws IllegalStateException if {@link #getInputStream()} or {@link #getReader()} has already
+   *     been called on this instance, or if this method has already been called.
+   * @throws UnsupportedOperationException if this request does not support a non-blocking body.
+   */
+  default Flow.Publisher<ByteBuffer> getBodyPublisher() {
+    throw new UnsupportedOperationException("getBodyPublisher");
+  }
+
+  /**
+   * Returns the time by which the function must have responded to this request, if the server
+   * enforces a timeout. A function that does a lot of work, or that calls other services, can use
+   * this to give up early or to pass the remaining time on as the deadline of its own calls.
+   *
+   * <p>When the deadline passes, the server responds with an error and cancels the invocation: the
+   * thread that is running the function is interrupted, and the {@link
+   * java.util.concurrent.CompletionStage} returned by an {@link AsyncHttpFunction} is cancelled if
+   * it is a {@link java.util.concurrent.CompletableFuture}. A function that catches {@link
+   * InterruptedException} should return promptly, since nobody will read its response.
+   *
+   * <p>The default implementation returns {@link Optional#empty()}.
+   *
+   * @return the deadline of this request, or {@link Optional#empty()} if there is none.
+   */
+  default Optional<Instant> getDeadline() {
+    return Optional.empty();
+  }
+
   /**
    * Represents one part inside a multipart ({@code multipart/form-data}) HTTP request. Each such
    * part can have its own HTTP headers, which can be retrieved with the methods inherited from
    * {@link HttpMessage}.
    */
   interface HttpPart extends HttpMessage {
+    /**
+     * Returns the name of this part, from the {@code name} parameter of its {@code
+     * Content-Disposition} header. This is the key of the part in {@link HttpRequest#getParts()}.
+     *
+     * <p>The default implementation throws {@link UnsupportedOperationException}.
+     *
+     * @return the name of this part.
+     */
+    default String getName() {
+      throw new UnsupportedOperationException("getName");
+    }
+
     /**
      * Returns the filename associated with this part, if any.
      *
@@ -104,4 +157,29 @@ public interface HttpRequest extends HttpMessage {
    *     multipart/form-data}.
    */
   Map<String, HttpPart> getParts();
+
+  /**
+   * Returns the parts inside this multipart ({@code multipart/form-data}) HTTP request, in the
+   * order in which they appear in the request.
+   *
+   * <p>Normally the whole request has been parsed before the function is called, and this method
+   * iterates over the same parts as {@link #getParts()}. If the server has been configured to
+   * stream multipart requests, the request is instead parsed as the function iterates. Then each
+   * part's content is read from the network as the function reads it, so the request never has to
+   * fit in memory. In that case the content of a part can only be read until {@code hasNext()} or
+   * {@code next()} is next called, and the returned iterator can only be used once.
+   *
+   * <p>The iterator's methods throw {@link java.io.UncheckedIOException} if the request cannot be
+   * read or is not a well-formed multipart request.
+   *
+   * <p>The default implementation iterates over the values of {@link #getParts()}.
+   *
+   * @return an iterator over the parts of this request.
+   * @throws IllegalStateException if the {@link #getContentType() content type} is not {@code
+   *     multipart/form-data}, or if the request is being streamed and its body has already been
+   *     read.
+   */
+  default Iterator<HttpPart> getPartIterator() {
+    return getParts().values().iterator();
+  }
 }
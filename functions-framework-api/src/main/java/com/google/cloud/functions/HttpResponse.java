@@ -17,9 +17,12 @@ package com.google.cloud.functions;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Represents the contents of an HTTP response that is being sent by a Cloud Function in response to
@@ -111,4 +114,132 @@ public interface HttpResponse {
    *     instance.
    */
   BufferedWriter getWriter() throws IOException;
+
+  /**
+   * Sends the status, headers, and any body content written so far to the client, without waiting
+   * for the function to return. After this method has been called, the status and headers can no
+   * longer be changed. This can be used to stream incremental output, such as progress updates.
+   * Content written through {@link #getWriter()} or {@link #getOutputStream()} is otherwise
+   * buffered, and is only sent once the buffer is full or the function returns.
+   *
+   * <p>The default implementation throws {@link UnsupportedOperationException}.
+   *
+   * @throws IOException if the content could not be sent, for example because the client has
+   *     disconnected.
+   */
+  default void flush() throws IOException {
+    throw new UnsupportedOperationException("flush");
+  }
+
+  /**
+   * Sends the given content as the next part of the response body, without blocking the calling
+   * thread. The content is sent to the client as soon as possible, rather than being buffered.
+   *
+   * <p>Only one such write can be in progress at a time. A function that streams its output should
+   * produce and write the next piece of content once the {@link CompletionStage} returned for the
+   * previous one has completed. Then the function never has more than one piece of content in
+   * memory, and it produces content no faster than the client can receive it.
+   *
+   * <p>The function may return before the last write has completed, in which case the response is
+   * completed once that write completes.
+   *
+   * <p>The default implementation throws {@link UnsupportedOperationException}.
+   *
+   * @param content the content to send. It must not be modified until the write completes.
+   * @return a {@link CompletionStage} that completes when the content has been sent, or completes
+   *     exceptionally if it could not be sent, for example because the client has disconnected.
+   * @throws IllegalStateException if a previous write has not yet completed, or if {@link
+   *     #getWriter} has been called on this instance.
+   */
+  default CompletionStage<Void> writeAsync(ByteBuffer content) {
+    throw new UnsupportedOperationException("writeAsync");
+  }
+
+  /**
+   * Sends the given content as the whole body of the response, with a {@code Content-Length}
+   * header, and blocks until it has been sent. The content is handed to the server as it is,
+   * without being copied into a response buffer, so this is the most efficient way to send content
+   * that is already in memory, such as a cached response. No more content can be written to the
+   * response afterwards.
+   *
+   * <p>The default implementation throws {@link UnsupportedOperationException}.
+   *
+   * @param content the complete response body.
+   * @throws IOException if the content could not be sent, for example because the client has
+   *     disconnected.
+   * @throws IllegalStateException if content has already been written to the response.
+   */
+  default void send(ByteBuffer content) throws IOException {
+    throw new UnsupportedOperationException("send");
+  }
+
+  /**
+   * Sends the contents of the given file as the whole body of the response, with a {@code
+   * Content-Length} header, and blocks until it has been sent. The file is memory-mapped where
+   * possible, so its contents go to the network without being copied through the Java heap. The
+   * file must not be modified while it is being sent. No more content can be written to the
+   * response afterwards.
+   *
+   * <p>The default implementation throws {@link UnsupportedOperationException}.
+   *
+   * @param file the file whose contents are the response body.
+   * @throws IOException if the file could not be read or the content could not be sent.
+   * @throws IllegalStateException if content has already been written to the response.
+   */
+  default void sendFile(Path file) throws IOException {
+    throw new UnsupportedOperationException("sendFile");
+  }
+
+  /**
+   * Starts a <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent
+   * Events</a> stream as the body of this response. This sets the {@code Content-Type} to {@code
+   * text/event-stream} and disables caching. Each event is sent to the client as soon as it is
+   * written. Every call to this method on the same {@link HttpResponse} returns the same object.
+   *
+   * <p>The default implementation throws {@link UnsupportedOperationException}.
+   *
+   * @return the event stream.
+   * @throws IllegalStateException if {@link #getWriter} or {@link #getOutputStream} has already
+   *     been called on this instance.
+   */
+  default EventStream getEventStream() {
+    throw new UnsupportedOperationException("getEventStream");
+  }
+
+  /**
+   * A stream of <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent
+   * Events</a>, obtained from {@link HttpResponse#getEventStream()}.
+   */
+  interface EventStream {
+    /**
+     * Sends an event with the given data and no event type, blocking until it has been sent. If
+     * {@code data} contains line breaks, each line is sent as a separate {@code data} field, and
+     * the client receives the original text.
+     *
+     * @param data the event data.
+     * @throws IOException if the event could not be sent.
+     */
+    default void send(String data) throws IOException {
+      send(null, data);
+    }
+
+    /**
+     * Sends an event with the given type and data, blocking until it has been sent.
+     *
+     * @param event the event type, or null for the default type, {@code message}.
+     * @param data the event data.
+     * @throws IOException if the event could not be sent.
+     */
+    void send(String event, String data) throws IOException;
+
+    /**
+     * Sends an event with the given type and data without blocking. As with {@link
+     * HttpResponse#writeAsync}, only one send can be in progress at a time.
+     *
+     * @param event the event type, or null for the default type, {@code message}.
+     * @param data the event data.
+     * @return a {@link CompletionStage} that completes when the event has been sent.
+     */
+    CompletionStage<Void> sendAsync(String event, String data);
+  }
 }
@@ -0,0 +1,50 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link TypedFunction} whose response depends only on the body of its request, so that
+ * the framework can remember the response to each request body and send it again when the same
+ * body arrives, without deserializing the request, calling {@link TypedFunction#apply apply}, or
+ * serializing the response. Only responses with status 200 are remembered.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * &#64;Memoized(maxEntries = 10_000, ttlSeconds = 600)
+ * public class Geocode implements TypedFunction&lt;Address, LatLng&gt; {
+ *   ...
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Memoized {
+  /** The largest number of responses to remember. The least recently used are forgotten first. */
+  int maxEntries() default 1000;
+
+  /** How long, in seconds, a response is remembered after the function produced it. */
+  long ttlSeconds() default 300;
+
+  /** The largest request body, in bytes, whose response is remembered. */
+  int maxRequestBytes() default 64 * 1024;
+}
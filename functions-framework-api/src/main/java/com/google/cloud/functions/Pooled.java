@@ -0,0 +1,45 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a function class that is not thread-safe. Normally the framework constructs a single
+ * instance of the function class and calls it from many threads at once. For a class with this
+ * annotation, it constructs a pool of instances up front, and each invocation has an instance to
+ * itself until it finishes. If every instance is in use, an invocation waits for one to be free.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * &#64;Pooled(size = 8)
+ * public class Transcode implements HttpFunction {
+ *   private final NativeCodec codec = new NativeCodec();
+ *   ...
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Pooled {
+  /** The number of instances. The default, 0, means one per available processor. */
+  int size() default 0;
+}
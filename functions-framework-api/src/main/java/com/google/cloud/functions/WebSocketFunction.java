@@ -0,0 +1,69 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents a Cloud Function that handles WebSocket connections. The framework accepts a WebSocket
+ * upgrade request on any path, and then calls the methods of this interface as the session opens,
+ * receives messages, and closes. A single instance of the function serves all sessions, so its
+ * methods may be called concurrently for different sessions. For any one session, the methods are
+ * called one at a time.
+ *
+ * <p>If a method throws an exception, the session is closed with status code 1011 (server error).
+ */
+@FunctionalInterface
+public interface WebSocketFunction {
+  /**
+   * Called when a new session has been opened. The default implementation does nothing.
+   *
+   * @param session the new session.
+   * @throws Exception if thrown, the session will be closed.
+   */
+  default void onOpen(WebSocketSession session) throws Exception {}
+
+  /**
+   * Called when a text message has been received on the session.
+   *
+   * @param session the session that received the message.
+   * @param message the text of the message.
+   * @throws Exception if thrown, the session will be closed.
+   */
+  void onMessage(WebSocketSession session, String message) throws Exception;
+
+  /**
+   * Called when a binary message has been received on the session. The buffer is only valid until
+   * this method returns. The default implementation closes the session with status code 1003
+   * (unsupported data).
+   *
+   * @param session the session that received the message.
+   * @param message the content of the message.
+   * @throws Exception if thrown, the session will be closed.
+   */
+  default void onBinaryMessage(WebSocketSession session, ByteBuffer message) throws Exception {
+    session.close(1003, "Binary messages are not supported");
+  }
+
+  /**
+   * Called when the session has been closed, either by the client or by the server. The default
+   * implementation does nothing.
+   *
+   * @param session the session that was closed.
+   * @param statusCode the WebSocket status code for the closure.
+   * @param reason the reason for the closure, which may be null.
+   */
+  default void onClose(WebSocketSession session, int statusCode, String reason) {}
+}
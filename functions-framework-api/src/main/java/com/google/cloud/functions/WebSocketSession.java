@@ -0,0 +1,89 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/** Represents an open WebSocket session between a {@link WebSocketFunction} and a client. */
+public interface WebSocketSession {
+  /**
+   * Returns the full URI of the HTTP request that opened this session, including the query string.
+   *
+   * @return the request URI.
+   */
+  String getUri();
+
+  /**
+   * Returns the headers of the HTTP request that opened this session, in the same form as {@link
+   * HttpMessage#getHeaders()}.
+   *
+   * @return a map from each header name to a list of its values.
+   */
+  Map<String, List<String>> getHeaders();
+
+  /**
+   * Convenience method that returns the value of the first header with the given name in the HTTP
+   * request that opened this session.
+   *
+   * @param name an HTTP header name.
+   * @return the first value of the given header, if present.
+   */
+  default Optional<String> getFirstHeader(String name) {
+    List<String> headers = getHeaders().get(name);
+    if (headers == null || headers.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(headers.get(0));
+  }
+
+  /**
+   * Sends a text message to the client. This method does not block: the message is queued and the
+   * returned stage completes when it has been written, or completes exceptionally if it could not
+   * be. Messages are delivered in the order that they were sent.
+   *
+   * @param message the text of the message.
+   * @return a stage that completes when the message has been written.
+   */
+  CompletionStage<Void> sendText(String message);
+
+  /**
+   * Sends a binary message to the client. This method does not block, and behaves like {@link
+   * #sendText}. The buffer must not be modified until the returned stage completes.
+   *
+   * @param message the content of the message.
+   * @return a stage that completes when the message has been written.
+   */
+  CompletionStage<Void> sendBinary(ByteBuffer message);
+
+  /**
+   * Starts closing this session. {@link WebSocketFunction#onClose} is called once the closure is
+   * complete.
+   *
+   * @param statusCode the WebSocket status code, for example 1000 for a normal closure.
+   * @param reason a short reason for the closure, or null.
+   */
+  void close(int statusCode, String reason);
+
+  /**
+   * Returns whether this session is still open, meaning that messages can still be sent.
+   *
+   * @return true if the session is open.
+   */
+  boolean isOpen();
+}
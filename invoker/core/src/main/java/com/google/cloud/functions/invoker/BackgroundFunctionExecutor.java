@@ -20,8 +20,17 @@ import static java.util.stream.Collectors.toMap;
 import com.google.cloud.functions.BackgroundFunction;
 import com.google.cloud.functions.CloudEventsFunction;
 import com.google.cloud.functions.Context;
+import com.google.cloud.functions.FunctionLifecycle;
 import com.google.cloud.functions.RawBackgroundFunction;
 import com.google.cloud.functions.invoker.gcf.ExecutionIdUtil;
+import com.google.cloud.functions.invoker.http.Cancellation;
+import com.google.cloud.functions.invoker.jfr.AdmissionEvent;
+import com.google.cloud.functions.invoker.jfr.BodyReadEvent;
+import com.google.cloud.functions.invoker.jfr.EventConversionEvent;
+import com.google.cloud.functions.invoker.jfr.EventParsingEvent;
+import com.google.cloud.functions.invoker.jfr.FunctionExecutionEvent;
+import com.google.cloud.functions.invoker.trace.Span;
+import com.google.cloud.functions.invoker.trace.Tracer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
@@ -43,6 +52,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.jetty.http.HttpField;
@@ -53,16 +63,22 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 
 /** Executes the user's background function. */
 public final class BackgroundFunctionExecutor extends Handler.Abstract {
   private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
 
-  private final FunctionExecutor<?> functionExecutor;
+  private final FunctionPool<FunctionExecutor<?>> functionExecutors;
   private final ExecutionIdUtil executionIdUtil = new ExecutionIdUtil();
-
-  private BackgroundFunctionExecutor(FunctionExecutor<?> functionExecutor) {
-    this.functionExecutor = functionExecutor;
+  private final LongAdder abandoned = new LongAdder();
+  private EventDeduplicationCache deduplicationCache;
+  private EventOrdering ordering;
+  private Tracer tracer;
+
+  private BackgroundFunctionExecutor(FunctionPool<FunctionExecutor<?>> functionExecutors) {
+    this.functionExecutors = functionExecutors;
+    addBean(functionExecutors);
   }
 
   private enum FunctionKind {
@@ -96,11 +112,21 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
    *     we are unable to construct an instance using its no-arg constructor.
    */
   public static Optional<BackgroundFunctionExecutor> maybeForClass(Class<?> functionClass) {
+    return maybeForClass(functionClass, 0);
+  }
+
+  /**
+   * Like {@link #maybeForClass(Class)}, but with a pool of {@code instances} instances of the class
+   * if that is positive. Otherwise the class's {@link com.google.cloud.functions.Pooled Pooled}
+   * annotation, if any, determines whether there is a pool.
+   */
+  public static Optional<BackgroundFunctionExecutor> maybeForClass(
+      Class<?> functionClass, int instances) {
     Optional<FunctionKind> maybeFunctionKind = FunctionKind.forClass(functionClass);
     if (!maybeFunctionKind.isPresent()) {
       return Optional.empty();
     }
-    return Optional.of(forClass(functionClass, maybeFunctionKind.get()));
+    return Optional.of(forClass(functionClass, maybeFunctionKind.get(), instances));
   }
 
   /**
@@ -111,6 +137,15 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
    *     are unable to construct an instance using its no-arg constructor.
    */
   public static BackgroundFunctionExecutor forClass(Class<?> functionClass) {
+    return forClass(functionClass, 0);
+  }
+
+  /**
+   * Like {@link #forClass(Class)}, but with a pool of {@code instances} instances of the class if
+   * that is positive. Otherwise the class's {@link com.google.cloud.functions.Pooled Pooled}
+   * annotation, if any, determines whether there is a pool.
+   */
+  public static BackgroundFunctionExecutor forClass(Class<?> functionClass, int instances) {
     Optional<FunctionKind> maybeFunctionKind = FunctionKind.forClass(functionClass);
     if (!maybeFunctionKind.isPresent()) {
       List<String> classNames =
@@ -121,11 +156,38 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
               + " must implement one of these interfaces: "
               + String.join(", ", classNames));
     }
-    return forClass(functionClass, maybeFunctionKind.get());
+    return forClass(functionClass, maybeFunctionKind.get(), instances);
   }
 
   private static BackgroundFunctionExecutor forClass(
-      Class<?> functionClass, FunctionKind functionKind) {
+      Class<?> functionClass, FunctionKind functionKind, int instances) {
+    Type targetType = null;
+    if (functionKind == FunctionKind.BACKGROUND) {
+      @SuppressWarnings("unchecked")
+      Class<? extends BackgroundFunction<?>> c =
+          (Class<? extends BackgroundFunction<?>>)
+              functionClass.asSubclass(BackgroundFunction.class);
+      Optional<Type> maybeTargetType = backgroundFunctionTypeArgument(c);
+      if (!maybeTargetType.isPresent()) {
+        // This is probably because the user implemented just BackgroundFunction rather than
+        // BackgroundFunction<T>.
+        throw new RuntimeException(
+            "Could not determine the payload type for BackgroundFunction of type "
+                + functionClass.getName()
+                + "; must implement BackgroundFunction<T> for some T");
+      }
+      targetType = maybeTargetType.get();
+    }
+    Type finalTargetType = targetType;
+    FunctionPool<FunctionExecutor<?>> executors =
+        FunctionPool.create(
+            FunctionPool.poolSize(functionClass, instances),
+            () -> newFunctionExecutor(functionClass, functionKind, finalTargetType));
+    return new BackgroundFunctionExecutor(executors);
+  }
+
+  private static FunctionExecutor<?> newFunctionExecutor(
+      Class<?> functionClass, FunctionKind functionKind, Type targetType) {
     Object instance;
     try {
       instance = functionClass.getConstructor().newInstance();
@@ -133,34 +195,53 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
       throw new RuntimeException(
           "Could not construct an instance of " + functionClass.getName() + ": " + e, e);
     }
-    FunctionExecutor<?> executor;
     switch (functionKind) {
       case RAW_BACKGROUND:
-        executor = new RawFunctionExecutor((RawBackgroundFunction) instance);
-        break;
+        return new RawFunctionExecutor((RawBackgroundFunction) instance);
       case BACKGROUND:
-        BackgroundFunction<?> backgroundFunction = (BackgroundFunction<?>) instance;
-        @SuppressWarnings("unchecked")
-        Class<? extends BackgroundFunction<?>> c =
-            (Class<? extends BackgroundFunction<?>>) backgroundFunction.getClass();
-        Optional<Type> maybeTargetType = backgroundFunctionTypeArgument(c);
-        if (!maybeTargetType.isPresent()) {
-          // This is probably because the user implemented just BackgroundFunction rather than
-          // BackgroundFunction<T>.
-          throw new RuntimeException(
-              "Could not determine the payload type for BackgroundFunction of type "
-                  + instance.getClass().getName()
-                  + "; must implement BackgroundFunction<T> for some T");
-        }
-        executor = new TypedFunctionExecutor<>(maybeTargetType.get(), backgroundFunction);
-        break;
+        return TypedFunctionExecutor.of(targetType, (BackgroundFunction<?>) instance);
       case CLOUD_EVENTS:
-        executor = new CloudEventFunctionExecutor((CloudEventsFunction) instance);
-        break;
+        return new CloudEventFunctionExecutor((CloudEventsFunction) instance);
       default: // can't happen, we've listed all the FunctionKind values already.
         throw new AssertionError(functionKind);
     }
-    return new BackgroundFunctionExecutor(executor);
+  }
+
+  /**
+   * Makes this executor skip events that it has recently handled, as recorded by the given cache.
+   * Events are identified by their event id, or for CloudEvents by their source and id. This must
+   * be called before the server is started.
+   *
+   * @return this executor.
+   */
+  public BackgroundFunctionExecutor withEventDeduplication(EventDeduplicationCache cache) {
+    this.deduplicationCache = cache;
+    addBean(cache);
+    return this;
+  }
+
+  /**
+   * Makes this executor run events with the same ordering key one at a time, in the order they
+   * arrive. This must be called before the server is started.
+   *
+   * @return this executor.
+   */
+  public BackgroundFunctionExecutor withEventOrdering(EventOrdering ordering) {
+    this.ordering = ordering;
+    addBean(ordering);
+    return this;
+  }
+
+  /**
+   * Makes this executor record a span for each invocation with the given tracer, with spans for
+   * parsing the event and for converting it between the legacy and CloudEvent formats. This must be
+   * called before the server is started.
+   *
+   * @return this executor.
+   */
+  public BackgroundFunctionExecutor withTracing(Tracer tracer) {
+    this.tracer = tracer;
+    return this;
   }
 
   /**
@@ -241,23 +322,50 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
    *     unmarshalling this event, if it is a CloudEvent.
    */
   private abstract static class FunctionExecutor<CloudEventDataT> {
+    private final Object function;
     private final Class<?> functionClass;
 
-    FunctionExecutor(Class<?> functionClass) {
-      this.functionClass = functionClass;
+    FunctionExecutor(Object function) {
+      this.function = function;
+      this.functionClass = function.getClass();
     }
 
     final String functionName() {
       return functionClass.getCanonicalName();
     }
 
+    /** The signature type reported in Flight Recorder events. */
+    final String signatureType() {
+      return this instanceof CloudEventFunctionExecutor ? "cloudevent" : "event";
+    }
+
     final ClassLoader functionClassLoader() {
       return functionClass.getClassLoader();
     }
 
-    abstract void serviceLegacyEvent(Event legacyEvent) throws Exception;
-
-    abstract void serviceCloudEvent(CloudEvent cloudEvent) throws Exception;
+    /**
+     * Calls the function with a legacy event from {@code req}, recording any conversion of it in
+     * {@code span}.
+     */
+    abstract void serviceLegacyEvent(Event legacyEvent, Request req, Span span) throws Exception;
+
+    /**
+     * Calls the function with a CloudEvent from {@code req}, recording any conversion of it in
+     * {@code span}.
+     */
+    abstract void serviceCloudEvent(CloudEvent cloudEvent, Request req, Span span)
+        throws Exception;
+
+    final Event convertToLegacyEvent(CloudEvent cloudEvent, Request req, Span span) {
+      EventConversionEvent conversion = new EventConversionEvent();
+      conversion.begin();
+      try (Span convert = span.child("convert event")) {
+        return CloudEvents.convertToLegacyEvent(cloudEvent);
+      } finally {
+        conversion.setTargetFormat("legacy");
+        conversion.commit(functionName(), signatureType(), req);
+      }
+    }
   }
 
   private static class RawFunctionExecutor extends FunctionExecutor<Map<?, ?>> {
@@ -265,18 +373,25 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     private final RawBackgroundFunction function;
 
     RawFunctionExecutor(RawBackgroundFunction function) {
-      super(function.getClass());
+      super(function);
       this.function = function;
     }
 
     @Override
-    void serviceLegacyEvent(Event legacyEvent) throws Exception {
-      function.accept(gson.toJson(legacyEvent.getData()), legacyEvent.getContext());
+    void serviceLegacyEvent(Event legacyEvent, Request req, Span span) throws Exception {
+      String data = gson.toJson(legacyEvent.getData());
+      FunctionExecutionEvent execution = new FunctionExecutionEvent();
+      execution.begin();
+      try {
+        function.accept(data, legacyEvent.getContext());
+      } finally {
+        execution.commit(functionName(), signatureType(), req);
+      }
     }
 
     @Override
-    void serviceCloudEvent(CloudEvent cloudEvent) throws Exception {
-      serviceLegacyEvent(CloudEvents.convertToLegacyEvent(cloudEvent));
+    void serviceCloudEvent(CloudEvent cloudEvent, Request req, Span span) throws Exception {
+      serviceLegacyEvent(convertToLegacyEvent(cloudEvent, req, span), req, span);
     }
   }
 
@@ -285,7 +400,7 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     private final BackgroundFunction<T> function;
 
     private TypedFunctionExecutor(Type type, BackgroundFunction<T> function) {
-      super(function.getClass());
+      super(function);
       this.type = type;
       this.function = function;
     }
@@ -297,15 +412,21 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     }
 
     @Override
-    void serviceLegacyEvent(Event legacyEvent) throws Exception {
+    void serviceLegacyEvent(Event legacyEvent, Request req, Span span) throws Exception {
       T payload = new Gson().fromJson(legacyEvent.getData(), type);
-      function.accept(payload, legacyEvent.getContext());
+      FunctionExecutionEvent execution = new FunctionExecutionEvent();
+      execution.begin();
+      try {
+        function.accept(payload, legacyEvent.getContext());
+      } finally {
+        execution.commit(functionName(), signatureType(), req);
+      }
     }
 
     @Override
-    void serviceCloudEvent(CloudEvent cloudEvent) throws Exception {
+    void serviceCloudEvent(CloudEvent cloudEvent, Request req, Span span) throws Exception {
       if (cloudEvent.getData() != null) {
-        serviceLegacyEvent(CloudEvents.convertToLegacyEvent(cloudEvent));
+        serviceLegacyEvent(convertToLegacyEvent(cloudEvent, req, span), req, span);
       } else {
         throw new IllegalStateException("Event has no \"data\" component");
       }
@@ -316,19 +437,33 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     private final CloudEventsFunction function;
 
     CloudEventFunctionExecutor(CloudEventsFunction function) {
-      super(function.getClass());
+      super(function);
       this.function = function;
     }
 
     @Override
-    void serviceLegacyEvent(Event legacyEvent) throws Exception {
-      CloudEvent cloudEvent = GcfEvents.convertToCloudEvent(legacyEvent);
-      function.accept(cloudEvent);
+    void serviceLegacyEvent(Event legacyEvent, Request req, Span span) throws Exception {
+      CloudEvent cloudEvent;
+      EventConversionEvent conversion = new EventConversionEvent();
+      conversion.begin();
+      try (Span convert = span.child("convert event")) {
+        cloudEvent = GcfEvents.convertToCloudEvent(legacyEvent);
+      } finally {
+        conversion.setTargetFormat("cloudevent");
+        conversion.commit(functionName(), signatureType(), req);
+      }
+      serviceCloudEvent(cloudEvent, req, span);
     }
 
     @Override
-    void serviceCloudEvent(CloudEvent cloudEvent) throws Exception {
-      function.accept(cloudEvent);
+    void serviceCloudEvent(CloudEvent cloudEvent, Request req, Span span) throws Exception {
+      FunctionExecutionEvent execution = new FunctionExecutionEvent();
+      execution.begin();
+      try {
+        function.accept(cloudEvent);
+      } finally {
+        execution.commit(functionName(), signatureType(), req);
+      }
     }
   }
 
@@ -336,44 +471,82 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
   @Override
   public boolean handle(Request req, Response res, Callback callback) throws Exception {
     String contentType = req.getHeaders().get(HttpHeader.CONTENT_TYPE);
+    Cancellation cancellation = Cancellation.of(req);
+    cancellation.cancelOnFailure(req, abandoned::increment);
+    Span span =
+        tracer == null
+            ? Span.NOOP
+            : tracer.startServerSpan(functionExecutors.any().functionName(), req.getHeaders());
     try {
       executionIdUtil.storeExecutionId(req);
-      if ((contentType != null && contentType.startsWith("application/cloudevents+json"))
-          || req.getHeaders().get("ce-specversion") != null) {
-        serviceCloudEvent(req);
-      } else {
-        serviceLegacyEvent(req);
+      executionIdUtil.storeTraceContext(req, span);
+      try {
+        if ((contentType != null && contentType.startsWith("application/cloudevents+json"))
+            || req.getHeaders().get("ce-specversion") != null) {
+          cancellation.runInterruptibly(() -> serviceCloudEvent(req, span));
+        } else {
+          cancellation.runInterruptibly(() -> serviceLegacyEvent(req, span));
+        }
+      } finally {
+        cancellation.finish();
       }
       res.setStatus(HttpStatus.OK_200);
+      span.end(HttpStatus.OK_200, null);
       callback.succeeded();
     } catch (Throwable t) {
-      logger.log(Level.SEVERE, "Failed to execute " + functionExecutor.functionName(), t);
-      Response.writeError(req, res, callback, HttpStatus.INTERNAL_SERVER_ERROR_500, null);
+      Level level = HttpErrors.isClientError(t) ? Level.FINE : Level.SEVERE;
+      logger.log(level, "Failed to execute " + functionExecutors.any().functionName(), t);
+      span.end(HttpErrors.statusFor(t), t);
+      Response.writeError(req, res, callback, HttpErrors.statusFor(t), null);
     } finally {
       executionIdUtil.removeExecutionId();
+      executionIdUtil.removeTraceContext();
     }
     return true;
   }
 
-  private enum CloudEventKind {
-    BINARY,
-    STRUCTURED
+  /**
+   * The number of invocations that were cancelled because the client went away before the function
+   * had finished.
+   */
+  @ManagedAttribute("The number of invocations cancelled because the client disconnected")
+  public long getAbandonedInvocations() {
+    return abandoned.sum();
   }
 
   /**
-   * Service a CloudEvent.
-   *
-   * @param <CloudEventT> a fake type parameter, which corresponds to the type parameter of {@link
-   *     FunctionExecutor}.
+   * Initializes the user's function, if it implements {@link FunctionLifecycle}, before the server
+   * starts serving.
    */
-  private <CloudEventT> void serviceCloudEvent(Request req) throws Exception {
-    @SuppressWarnings("unchecked")
-    FunctionExecutor<CloudEventT> executor = (FunctionExecutor<CloudEventT>) functionExecutor;
+  @Override
+  protected void doStart() throws Exception {
+    FunctionInstances.init(
+        functionExecutors.instances().stream().map(e -> e.function).collect(toList()));
+    super.doStart();
+  }
+
+  /** Closes the user's function, if it is {@link AutoCloseable}, when the server stops. */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    functionExecutors.instances().forEach(executor -> FunctionInstances.close(executor.function));
+  }
+
+  private enum CloudEventKind {
+    BINARY,
+    STRUCTURED
+  }
 
+  /** Service a CloudEvent. */
+  private void serviceCloudEvent(Request req, Span span) throws Exception {
     // Read the entire request body into a byte array.
     // TODO: this method is deprecated for removal, use the method introduced by
     //    https://github.com/jetty/jetty.project/pull/13939 when it is released.
+    BodyReadEvent bodyRead = new BodyReadEvent();
+    bodyRead.begin();
     byte[] body = Content.Source.asByteArrayAsync(req, -1).get();
+    bodyRead.setBytes(body.length);
+    bodyRead.commit(functionExecutors.any().functionName(), signatureType(), req);
     MessageReader reader = HttpMessageFactory.createReaderFromMultimap(headerMap(req), body);
     // It's important not to set the context ClassLoader earlier, because MessageUtils will use
     // ServiceLoader.load(EventFormat.class) to find a handler to deserialize a binary CloudEvent
@@ -382,9 +555,32 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     // ServiceLoader.load
     // will throw ServiceConfigurationError. At this point we're still running with the default
     // context ClassLoader, which is the system ClassLoader that has loaded the code here.
-    runWithContextClassLoader(() -> executor.serviceCloudEvent(reader.toEvent(data -> data)));
-    // The data->data is a workaround for a bug fixed since Milestone 4 of the SDK, in
-    // https://github.com/cloudevents/sdk-java/pull/259.
+    runWithContextClassLoader(
+        () -> {
+          // The data->data is a workaround for a bug fixed since Milestone 4 of the SDK, in
+          // https://github.com/cloudevents/sdk-java/pull/259.
+          CloudEvent cloudEvent;
+          EventParsingEvent parsing = new EventParsingEvent();
+          parsing.begin();
+          try (Span parse = span.child("parse event")) {
+            cloudEvent = reader.toEvent(data -> data);
+          } finally {
+            parsing.setFormat("cloudevent");
+            parsing.setBytes(body.length);
+            parsing.commit(functionExecutors.any().functionName(), signatureType(), req);
+          }
+          span.setAttribute("cloudevents.event_id", cloudEvent.getId());
+          span.setAttribute("cloudevents.event_type", cloudEvent.getType());
+          String key = cloudEvent.getSource() + " " + cloudEvent.getId();
+          runInOrder(
+              orderingKey(cloudEvent),
+              () ->
+                  runOnce(
+                      key,
+                      () ->
+                          withFunction(
+                              req, executor -> executor.serviceCloudEvent(cloudEvent, req, span))));
+        });
   }
 
   private static Map<String, List<String>> headerMap(Request req) {
@@ -397,15 +593,108 @@ public final class BackgroundFunctionExecutor extends Handler.Abstract {
     return headerMap;
   }
 
-  private void serviceLegacyEvent(Request req) throws Exception {
-    Event event = parseLegacyEvent(req);
-    runWithContextClassLoader(() -> functionExecutor.serviceLegacyEvent(event));
+  private void serviceLegacyEvent(Request req, Span span) throws Exception {
+    Event event;
+    EventParsingEvent parsing = new EventParsingEvent();
+    parsing.begin();
+    try (Span parse = span.child("parse event")) {
+      event = parseLegacyEvent(req);
+    } finally {
+      parsing.setFormat("legacy");
+      parsing.setBytes(req.getLength());
+      parsing.commit(functionExecutors.any().functionName(), signatureType(), req);
+    }
+    String key = event.getContext() == null ? null : event.getContext().eventId();
+    String orderingKey = ordering == null ? null : legacyOrderingKey(event);
+    runWithContextClassLoader(
+        () ->
+            runInOrder(
+                orderingKey,
+                () ->
+                    runOnce(
+                        key,
+                        () ->
+                            withFunction(
+                                req, executor -> executor.serviceLegacyEvent(event, req, span)))));
+  }
+
+  private String orderingKey(CloudEvent cloudEvent) {
+    return ordering == null ? null : ordering.keyOf(cloudEvent);
+  }
+
+  /**
+   * Returns the ordering key of a legacy event, from the CloudEvent it converts to, or null if it
+   * has none or is of a type that does not convert.
+   */
+  private String legacyOrderingKey(Event event) {
+    if (event.getContext() == null) {
+      return null;
+    }
+    try {
+      return ordering.keyOf(GcfEvents.convertToCloudEvent(event));
+    } catch (RuntimeException e) {
+      logger.log(Level.FINE, "Event has no ordering key", e);
+      return null;
+    }
+  }
+
+  /**
+   * Runs {@code task} after earlier events with the same ordering key, if ordering is enabled and
+   * the event has a key, and otherwise straight away.
+   */
+  private void runInOrder(String orderingKey, EventOrdering.Task task) throws Exception {
+    if (ordering == null) {
+      task.run();
+    } else {
+      ordering.runInOrder(orderingKey, task);
+    }
+  }
+
+  /**
+   * Runs {@code task}, which calls the function with the event identified by {@code key}, unless
+   * deduplication is enabled and the event is a duplicate. An event without an id is never a
+   * duplicate.
+   */
+  private void runOnce(String key, EventDeduplicationCache.Task task) throws Exception {
+    if (deduplicationCache == null || key == null) {
+      task.run();
+    } else {
+      deduplicationCache.runOnce(key, task);
+    }
+  }
+
+  /**
+   * Calls {@code call} with an instance of the function, which is leased from the pool for the
+   * duration if instances are pooled.
+   */
+  private void withFunction(Request req, FunctionCall call) throws Exception {
+    AdmissionEvent admission = new AdmissionEvent();
+    admission.begin();
+    FunctionExecutor<?> executor = functionExecutors.lease();
+    admission.setPooled(functionExecutors.isPooled());
+    admission.commit(executor.functionName(), executor.signatureType(), req);
+    try {
+      call.run(executor);
+    } finally {
+      functionExecutors.release(executor);
+    }
+  }
+
+  @FunctionalInterface
+  private interface FunctionCall {
+    void run(FunctionExecutor<?> executor) throws Exception;
+  }
+
+  /** The signature type reported in Flight Recorder events. */
+  private String signatureType() {
+    return functionExecutors.any().signatureType();
   }
 
   private void runWithContextClassLoader(ContextClassLoaderTask task) throws Exception {
     ClassLoader oldLoader = Thread.currentThread().getContextClassLoader();
     try {
-      Thread.currentThread().setContextClassLoader(functionExecutor.functionClassLoader());
+      Thread.currentThread()
+          .setContextClassLoader(functionExecutors.any().functionClassLoader());
       task.run();
     } finally {
       Thread.currentThread().setContextClassLoader(oldLoader);
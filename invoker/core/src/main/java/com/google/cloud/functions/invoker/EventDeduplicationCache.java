@@ -0,0 +1,173 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Remembers the ids of events that have recently been handled, so that an event that is delivered
+ * again is not handled twice. Pub/Sub and Eventarc deliver events at least once, and a redelivery
+ * often reaches the same instance shortly after the first delivery.
+ *
+ * <p>An event whose first delivery completed successfully within the time-to-live is acknowledged
+ * without calling the function. An event whose first delivery is still in progress waits for it,
+ * and then succeeds or fails the same way. If the first delivery fails, the id is forgotten so that
+ * a later redelivery calls the function again.
+ *
+ * <p>The cache is split into stripes, each with its own lock and its own least-recently-added
+ * eviction, so that concurrent events rarely contend. Only events that have been handled are
+ * evicted. A stripe whose events are all still in progress goes over its size for a while rather
+ * than forget one, since a redelivery of a forgotten event would call the function at the same time
+ * as the first delivery.
+ */
+@ManagedObject("Event deduplication cache")
+public final class EventDeduplicationCache {
+  private static final int STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final long ttlNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder inFlightHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a cache that remembers about {@code maxEntries} event ids, each for {@code ttl} after
+   * its event was handled.
+   */
+  public EventDeduplicationCache(int maxEntries, Duration ttl) {
+    int maxPerStripe = Math.max(1, maxEntries / STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(maxPerStripe);
+    }
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  /** A task that can throw a checked exception. */
+  @FunctionalInterface
+  interface Task {
+    void run() throws Exception;
+  }
+
+  /**
+   * Runs {@code task}, unless an event with the same {@code key} has already been handled or is
+   * being handled.
+   */
+  void runOnce(String key, Task task) throws Exception {
+    Stripe stripe = stripes[Math.floorMod(key.hashCode() ^ (key.hashCode() >>> 16), STRIPES)];
+    Entry entry;
+    Entry existing;
+    synchronized (stripe) {
+      existing = stripe.get(key);
+      if (existing != null && existing.isExpired(System.nanoTime(), ttlNanos)) {
+        stripe.remove(key);
+        existing = null;
+      }
+      entry = existing;
+      if (existing == null) {
+        entry = new Entry();
+        stripe.put(key, entry);
+        stripe.evict();
+      }
+    }
+
+    if (existing != null) {
+      if (existing.result.isDone()) {
+        hits.increment();
+      } else {
+        inFlightHits.increment();
+      }
+      try {
+        existing.result.get();
+      } catch (ExecutionException e) {
+        // Fail the same way as the first delivery did.
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        throw (Exception) e.getCause();
+      }
+      return;
+    }
+
+    misses.increment();
+    try {
+      task.run();
+    } catch (Throwable t) {
+      synchronized (stripe) {
+        stripe.remove(key, entry);
+      }
+      entry.result.completeExceptionally(t);
+      throw t;
+    }
+    entry.completedNanos = System.nanoTime();
+    entry.result.complete(null);
+  }
+
+  /** The number of duplicate events that had already been handled. */
+  @ManagedAttribute("The number of duplicate events that had already been handled")
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** The number of duplicate events that arrived while the first delivery was being handled. */
+  @ManagedAttribute("The number of duplicate events that waited for the first delivery")
+  public long getInFlightHits() {
+    return inFlightHits.sum();
+  }
+
+  /** The number of events that were not duplicates, so the function was called. */
+  @ManagedAttribute("The number of events for which the function was called")
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  private static final class Entry {
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    volatile long completedNanos;
+
+    boolean isExpired(long nowNanos, long ttlNanos) {
+      return result.isDone() && nowNanos - completedNanos > ttlNanos;
+    }
+  }
+
+  /** One stripe of the cache, which forgets its oldest handled entries once it is full. */
+  private static final class Stripe extends LinkedHashMap<String, Entry> {
+    private final int maxEntries;
+
+    Stripe(int maxEntries) {
+      this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Removes the oldest entries whose events have been handled until the stripe is within its
+     * size. Entries still in progress are skipped. There are at most as many of those as events
+     * being handled, so the scan stays short.
+     */
+    void evict() {
+      Iterator<Entry> iterator = values().iterator();
+      while (size() > maxEntries && iterator.hasNext()) {
+        if (iterator.next().result.isDone()) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import io.cloudevents.CloudEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.eclipse.jetty.http.HttpException;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Runs events that share an ordering key one at a time, in the order they arrive, while events
+ * with different keys run concurrently. The key is the value of a configured CloudEvent attribute
+ * or extension, for example {@code subject}, which for Firestore events is the document path.
+ *
+ * <p>Keys are hashed to a fixed number of lanes, each with a fair lock, so events whose keys share
+ * a lane are also serialized. More lanes mean fewer such collisions. An event without the attribute
+ * is not ordered.
+ *
+ * <p>An event waiting for its lane holds a server thread, so a busy key could otherwise take every
+ * thread in the pool. The number of waiting events is bounded, both per lane and in total, and an
+ * event beyond either bound is rejected with 429 Too Many Requests. Pub/Sub and Eventarc redeliver
+ * it later, by which time the lane has usually drained.
+ */
+@ManagedObject("Event ordering")
+public final class EventOrdering {
+  private final String attribute;
+  private final ReentrantLock[] lanes;
+  private final int maxWaitingPerLane;
+  private final int maxWaiting;
+  private final AtomicIntegerArray waitingPerLane;
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * Orders events by the given attribute or extension, using the given number of lanes. At most
+   * {@code maxWaitingPerLane} events may wait for any one lane, and at most {@code maxWaiting} for
+   * all of them together.
+   */
+  public EventOrdering(String attribute, int lanes, int maxWaitingPerLane, int maxWaiting) {
+    if (lanes < 1) {
+      throw new IllegalArgumentException("Number of lanes must be positive: " + lanes);
+    }
+    if (maxWaitingPerLane < 1 || maxWaiting < 1) {
+      throw new IllegalArgumentException(
+          "Maximum waiting events must be positive: " + maxWaitingPerLane + ", " + maxWaiting);
+    }
+    this.attribute = attribute;
+    this.maxWaitingPerLane = maxWaitingPerLane;
+    this.maxWaiting = maxWaiting;
+    this.waitingPerLane = new AtomicIntegerArray(lanes);
+    this.lanes = new ReentrantLock[lanes];
+    for (int i = 0; i < lanes; i++) {
+      // A fair lock hands the lane to the waiting events in the order they asked for it.
+      this.lanes[i] = new ReentrantLock(true);
+    }
+  }
+
+  /** A task that can throw a checked exception. */
+  @FunctionalInterface
+  interface Task {
+    void run() throws Exception;
+  }
+
+  /**
+   * Returns the ordering key of {@code event}, or null if it does not have the configured attribute
+   * or extension.
+   */
+  String keyOf(CloudEvent event) {
+    Object value = event.getExtension(attribute);
+    if (value == null) {
+      try {
+        value = event.getAttribute(attribute);
+      } catch (IllegalArgumentException e) {
+        // Not a CloudEvents context attribute either.
+      }
+    }
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Runs {@code task} once every earlier event in the same lane as {@code key} has finished. If
+   * {@code key} is null the task runs straight away. Waiting for the lane is interruptible, so a
+   * cancelled invocation does not keep its place.
+   *
+   * @throws HttpException.RuntimeException with status 429 if the lane is busy and too many events
+   *     are already waiting
+   */
+  void runInOrder(String key, Task task) throws Exception {
+    if (key == null) {
+      task.run();
+      return;
+    }
+    int hash = key.hashCode() ^ (key.hashCode() >>> 16);
+    int index = Math.floorMod(hash, lanes.length);
+    ReentrantLock lane = lanes[index];
+    // An event that takes a free lane straight away does not wait, so it does not count. Unlike
+    // tryLock(), a timed tryLock honours fairness, so it does not jump ahead of waiting events.
+    if (!lane.tryLock(0, TimeUnit.SECONDS)) {
+      await(index, lane);
+    }
+    try {
+      task.run();
+    } finally {
+      lane.unlock();
+    }
+  }
+
+  private void await(int index, ReentrantLock lane) throws InterruptedException {
+    boolean admitted = false;
+    if (waitingPerLane.incrementAndGet(index) <= maxWaitingPerLane) {
+      if (waiting.incrementAndGet() <= maxWaiting) {
+        admitted = true;
+      } else {
+        waiting.decrementAndGet();
+      }
+    }
+    if (!admitted) {
+      waitingPerLane.decrementAndGet(index);
+      rejected.incrementAndGet();
+      throw new HttpException.RuntimeException(
+          HttpStatus.TOO_MANY_REQUESTS_429, "Too many events waiting for the same ordering key");
+    }
+    try {
+      lane.lockInterruptibly();
+    } finally {
+      waiting.decrementAndGet();
+      waitingPerLane.decrementAndGet(index);
+    }
+  }
+
+  /** The number of lanes. */
+  @ManagedAttribute("The number of lanes")
+  public int getLanes() {
+    return lanes.length;
+  }
+
+  /** The number of events waiting for an earlier event with the same key, or in the same lane. */
+  @ManagedAttribute("The number of events waiting for their lane")
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  /** The number of events rejected because too many were already waiting. */
+  @ManagedAttribute("The number of events rejected because too many were waiting")
+  public long getRejected() {
+    return rejected.get();
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import com.google.cloud.functions.FunctionLifecycle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** Operations on the instances of the user's function class that an executor holds. */
+final class FunctionInstances {
+  private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
+
+  private FunctionInstances() {}
+
+  /**
+   * Initializes the given function instances that implement {@link FunctionLifecycle}, and waits
+   * until they have all finished. This is called when the executor is started, which happens before
+   * the server accepts connections, so no request sees a function that is not ready. The instances
+   * of a pool initialize concurrently if their {@code init} methods are asynchronous.
+   *
+   * @throws Exception if any instance fails to initialize, which stops the server from starting.
+   */
+  static void init(List<?> functions) throws Exception {
+    // The instances are all of the same class.
+    if (functions.isEmpty() || !(functions.get(0) instanceof FunctionLifecycle)) {
+      return;
+    }
+    String name = functions.get(0).getClass().getName();
+    long start = System.nanoTime();
+    List<CompletableFuture<Void>> stages = new ArrayList<>();
+    for (Object function : functions) {
+      ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
+      try {
+        Thread.currentThread().setContextClassLoader(function.getClass().getClassLoader());
+        CompletionStage<Void> stage = ((FunctionLifecycle) function).init();
+        if (stage != null) {
+          stages.add(stage.toCompletableFuture());
+        }
+      } finally {
+        Thread.currentThread().setContextClassLoader(oldContextLoader);
+      }
+    }
+    try {
+      CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0])).get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw new RuntimeException("Failed to initialize " + name + ": " + cause, cause);
+    }
+    logger.log(
+        Level.INFO,
+        "Initialized {0} in {1} ms",
+        new Object[] {name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+  }
+
+  /**
+   * Closes the given function instance if it implements {@link AutoCloseable}, as every {@link
+   * FunctionLifecycle} does. This is called when the executor is stopped, which happens after the
+   * server has finished draining requests, so the function is no longer being called. The function
+   * runs with its own class loader as the context class loader, as it does when handling a request.
+   * A failure is logged rather than thrown so that it does not prevent the rest of the server from
+   * stopping.
+   */
+  static void close(Object function) {
+    if (!(function instanceof AutoCloseable)) {
+      return;
+    }
+    ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
+    try {
+      Thread.currentThread().setContextClassLoader(function.getClass().getClassLoader());
+      ((AutoCloseable) function).close();
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to close " + function.getClass().getName(), e);
+    } finally {
+      Thread.currentThread().setContextClassLoader(oldContextLoader);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import com.google.cloud.functions.Pooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * The instances of the user's function class that an executor calls. Usually there is a single
+ * instance, shared by every invocation. For a function that is not thread-safe there is a fixed
+ * pool of instances, and each invocation leases one for as long as it runs, waiting if they are all
+ * leased. The time spent waiting is recorded, so that a pool that is too small for the traffic
+ * shows up.
+ *
+ * @param <T> the type of the instances, which is either the function class or something that wraps
+ *     an instance of it.
+ */
+@ManagedObject("Function instances")
+public final class FunctionPool<T> {
+  private final List<T> instances;
+  // Null if the single instance is shared.
+  private final BlockingQueue<T> idle;
+  private final LongAdder leases = new LongAdder();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+  private FunctionPool(List<T> instances, BlockingQueue<T> idle) {
+    this.instances = instances;
+    this.idle = idle;
+  }
+
+  /**
+   * Returns the number of instances of {@code functionClass} to pool. If {@code configured} is
+   * positive, that is the number. Otherwise it comes from the class's {@link Pooled} annotation,
+   * and if there is none, the result is 0, meaning that a single instance is shared.
+   */
+  static int poolSize(Class<?> functionClass, int configured) {
+    if (configured > 0) {
+      return configured;
+    }
+    Pooled pooled = functionClass.getAnnotation(Pooled.class);
+    if (pooled == null) {
+      return 0;
+    }
+    return pooled.size() > 0 ? pooled.size() : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Makes {@code size} instances with {@code factory}, to be leased one per invocation, or if
+   * {@code size} is 0 makes a single instance that every invocation shares.
+   */
+  static <T> FunctionPool<T> create(int size, Supplier<T> factory) {
+    if (size <= 0) {
+      return new FunctionPool<>(List.of(factory.get()), null);
+    }
+    List<T> instances = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      instances.add(factory.get());
+    }
+    BlockingQueue<T> idle = new ArrayBlockingQueue<>(size, false, instances);
+    return new FunctionPool<>(List.copyOf(instances), idle);
+  }
+
+  /**
+   * Returns an instance for one invocation, waiting for one to be released if they are all in use.
+   * The caller must pass it to {@link #release} when the invocation finishes.
+   */
+  T lease() throws InterruptedException {
+    leases.increment();
+    if (idle == null) {
+      return instances.get(0);
+    }
+    T instance = idle.poll();
+    if (instance == null) {
+      long start = System.nanoTime();
+      instance = idle.take();
+      long waited = System.nanoTime() - start;
+      waits.increment();
+      waitNanos.add(waited);
+      maxWaitNanos.accumulate(waited);
+    }
+    return instance;
+  }
+
+  /** Makes an instance returned by {@link #lease} available to other invocations. */
+  void release(T instance) {
+    if (idle != null) {
+      idle.add(instance);
+    }
+  }
+
+  /** Every instance, for example to close them all. */
+  List<T> instances() {
+    return instances;
+  }
+
+  /** An instance, for example to find out about the function class. */
+  T any() {
+    return instances.get(0);
+  }
+
+  /** The number of instances. */
+  @ManagedAttribute("The number of function instances")
+  public int getSize() {
+    return instances.size();
+  }
+
+  /** Whether invocations lease instances rather than sharing one. */
+  @ManagedAttribute("Whether invocations lease instances rather than sharing one")
+  public boolean isPooled() {
+    return idle != null;
+  }
+
+  /** The number of instances not currently leased. */
+  @ManagedAttribute("The number of function instances not in use")
+  public int getIdle() {
+    return idle == null ? instances.size() : idle.size();
+  }
+
+  /** The number of invocations that had to wait for an instance. */
+  @ManagedAttribute("The number of invocations that waited for a function instance")
+  public long getWaits() {
+    return waits.sum();
+  }
+
+  /** The total time that invocations have waited for an instance, in milliseconds. */
+  @ManagedAttribute("The total time invocations waited for a function instance, in milliseconds")
+  public long getWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+  }
+
+  /** The longest time that an invocation has waited for an instance, in milliseconds. */
+  @ManagedAttribute("The longest time an invocation waited for a function instance, in ms")
+  public long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+  }
+
+  /** The number of times an instance has been leased or shared. */
+  @ManagedAttribute("The number of invocations")
+  public long getLeases() {
+    return leases.sum();
+  }
+}
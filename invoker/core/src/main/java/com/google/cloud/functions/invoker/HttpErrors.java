@@ -0,0 +1,46 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import org.eclipse.jetty.http.HttpException;
+import org.eclipse.jetty.http.HttpStatus;
+
+/** Maps a failed invocation to the status code of the error response. */
+final class HttpErrors {
+  private HttpErrors() {}
+
+  /**
+   * Returns the status code for a failure thrown by a function or while reading its request. Jetty
+   * reports a problem with the request itself, such as a body that is larger than the configured
+   * limit, as an {@link HttpException}. The function may have wrapped it in its own exception, so
+   * we look along the whole cause chain. Any other failure is a server error.
+   */
+  static int statusFor(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpException) {
+        return ((HttpException) cause).getCode();
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return HttpStatus.INTERNAL_SERVER_ERROR_500;
+  }
+
+  /** Returns true if the failure is the client's fault, so it is not worth logging as severe. */
+  static boolean isClientError(Throwable t) {
+    return HttpStatus.isClientError(statusFor(t));
+  }
+}
@@ -14,49 +14,94 @@
 
 package com.google.cloud.functions.invoker;
 
+import com.google.cloud.functions.AsyncHttpFunction;
+import com.google.cloud.functions.FunctionLifecycle;
 import com.google.cloud.functions.HttpFunction;
 import com.google.cloud.functions.invoker.gcf.ExecutionIdUtil;
+import com.google.cloud.functions.invoker.http.Cancellation;
 import com.google.cloud.functions.invoker.http.HttpRequestImpl;
 import com.google.cloud.functions.invoker.http.HttpResponseImpl;
+import com.google.cloud.functions.invoker.jfr.AdmissionEvent;
+import com.google.cloud.functions.invoker.jfr.FunctionExecutionEvent;
+import com.google.cloud.functions.invoker.jfr.ResponseCloseEvent;
+import com.google.cloud.functions.invoker.trace.Span;
+import com.google.cloud.functions.invoker.trace.Tracer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 
-/** Executes the user's method. */
+/**
+ * Executes the user's method. The user's class implements either {@link HttpFunction}, in which
+ * case the request is finished when its method returns, or {@link AsyncHttpFunction}, in which
+ * case it is finished when the returned stage completes.
+ */
 public class HttpFunctionExecutor extends Handler.Abstract {
   private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
+  private static final String SIGNATURE_TYPE = "http";
+
+  /**
+   * The instances of the user's function: each either an {@link HttpFunction} or an {@link
+   * AsyncHttpFunction}.
+   */
+  private final FunctionPool<Object> functions;
 
-  private final HttpFunction function;
   private final ExecutionIdUtil executionIdUtil = new ExecutionIdUtil();
+  private final LongAdder abandoned = new LongAdder();
+  private Tracer tracer;
 
-  private HttpFunctionExecutor(HttpFunction function) {
-    this.function = function;
+  private HttpFunctionExecutor(FunctionPool<Object> functions) {
+    this.functions = functions;
+    addBean(functions);
   }
 
   /**
    * Makes a {@link HttpFunctionExecutor} for the given class.
    *
-   * @throws RuntimeException if either the given class does not implement {@link HttpFunction} or
-   *     we are unable to construct an instance using its no-arg constructor.
+   * @throws RuntimeException if either the given class implements neither {@link HttpFunction} nor
+   *     {@link AsyncHttpFunction} or we are unable to construct an instance using its no-arg
+   *     constructor.
    */
   public static HttpFunctionExecutor forClass(Class<?> functionClass) {
-    if (!HttpFunction.class.isAssignableFrom(functionClass)) {
+    return forClass(functionClass, 0);
+  }
+
+  /**
+   * Makes a {@link HttpFunctionExecutor} for the given class, with a pool of {@code instances}
+   * instances of it if that is positive. Otherwise the class's {@link
+   * com.google.cloud.functions.Pooled Pooled} annotation, if any, determines whether there is a
+   * pool.
+   *
+   * @throws RuntimeException if either the given class implements neither {@link HttpFunction} nor
+   *     {@link AsyncHttpFunction} or we are unable to construct an instance using its no-arg
+   *     constructor.
+   */
+  public static HttpFunctionExecutor forClass(Class<?> functionClass, int instances) {
+    if (!HttpFunction.class.isAssignableFrom(functionClass)
+        && !AsyncHttpFunction.class.isAssignableFrom(functionClass)) {
       throw new RuntimeException(
           "Class "
               + functionClass.getName()
               + " does not implement "
-              + HttpFunction.class.getName());
+              + HttpFunction.class.getName()
+              + " or "
+              + AsyncHttpFunction.class.getName());
     }
-    Class<? extends HttpFunction> httpFunctionClass = functionClass.asSubclass(HttpFunction.class);
+    int poolSize = FunctionPool.poolSize(functionClass, instances);
+    return new HttpFunctionExecutor(FunctionPool.create(poolSize, () -> construct(functionClass)));
+  }
+
+  private static Object construct(Class<?> functionClass) {
     ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
     try {
-      Thread.currentThread().setContextClassLoader(httpFunctionClass.getClassLoader());
-      HttpFunction httpFunction = httpFunctionClass.getConstructor().newInstance();
-      return new HttpFunctionExecutor(httpFunction);
+      Thread.currentThread().setContextClassLoader(functionClass.getClassLoader());
+      return functionClass.getConstructor().newInstance();
     } catch (ReflectiveOperationException e) {
       throw new RuntimeException(
           "Could not construct an instance of " + functionClass.getName() + ": " + e, e);
@@ -65,25 +110,162 @@ public class HttpFunctionExecutor extends Handler.Abstract {
     }
   }
 
+  /**
+   * Makes this executor record a span for each invocation with the given tracer. This must be
+   * called before the server is started.
+   *
+   * @return this executor.
+   */
+  public HttpFunctionExecutor withTracing(Tracer tracer) {
+    this.tracer = tracer;
+    return this;
+  }
+
   /** Executes the user's method, can handle all HTTP type methods. */
   @Override
   public boolean handle(Request request, Response response, Callback callback) throws Exception {
 
     HttpRequestImpl reqImpl = new HttpRequestImpl(request);
     HttpResponseImpl respImpl = new HttpResponseImpl(response);
+    Cancellation cancellation = Cancellation.of(request);
+    cancellation.cancelOnFailure(request, abandoned::increment);
+    Class<?> functionClass = functions.any().getClass();
+    Span span =
+        tracer == null
+            ? Span.NOOP
+            : tracer.startServerSpan(functionClass.getName(), request.getHeaders());
+    span.setAttribute("http.request.method", request.getMethod());
+    span.setAttribute("url.path", request.getHttpURI().getPath());
     ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
     try {
       executionIdUtil.storeExecutionId(request);
-      Thread.currentThread().setContextClassLoader(function.getClass().getClassLoader());
-      function.service(reqImpl, respImpl);
-      respImpl.close(callback);
+      executionIdUtil.storeTraceContext(request, span);
+      Thread.currentThread().setContextClassLoader(functionClass.getClassLoader());
+      String functionName = functionClass.getName();
+      if (AsyncHttpFunction.class.isAssignableFrom(functionClass)) {
+        // Waiting for a pooled instance must not hold the thread once the invocation is cancelled.
+        Object[] leased = new Object[1];
+        cancellation.runInterruptibly(() -> leased[0] = lease(request, functionName));
+        AsyncHttpFunction function = (AsyncHttpFunction) leased[0];
+        // The event is held until the stage completes, so it is only made if it will be recorded.
+        FunctionExecutionEvent execution =
+            FunctionExecutionEvent.isRecorded() ? new FunctionExecutionEvent() : null;
+        if (execution != null) {
+          execution.begin();
+        }
+        CompletionStage<Void> stage;
+        try {
+          stage = function.service(reqImpl, respImpl);
+          if (stage == null) {
+            throw new IllegalStateException(
+                functionName + ".service returned null rather than a CompletionStage");
+          }
+        } catch (Throwable t) {
+          cancellation.finish();
+          // The stage will never complete, so the instance must be released here or it is lost.
+          functions.release(function);
+          if (execution != null) {
+            execution.commit(functionName, SIGNATURE_TYPE, request);
+          }
+          throw t;
+        }
+        if (!functions.isPooled()) {
+          // Cancelling would complete the stage, and so release a pooled instance, while work that
+          // the function started on it may still be running. A pooled instance is released only
+          // when the function's own stage completes.
+          cancellation.onCancel(() -> cancel(stage));
+        }
+        stage.whenComplete(
+            (unused, t) -> {
+              cancellation.finish();
+              functions.release(function);
+              if (execution != null) {
+                execution.commit(functionName, SIGNATURE_TYPE, request);
+              }
+              span.end(t == null ? response.getStatus() : HttpErrors.statusFor(t), t);
+              if (t == null) {
+                respImpl.close(
+                    ResponseCloseEvent.timing(response, functionName, SIGNATURE_TYPE, callback));
+              } else {
+                Level level = HttpErrors.isClientError(t) ? Level.FINE : Level.SEVERE;
+                logger.log(level, "Failed to execute " + functionClass.getName(), t);
+                Response.writeError(request, response, callback, HttpErrors.statusFor(t), null);
+              }
+            });
+      } else {
+        cancellation.runInterruptibly(
+            () -> {
+              HttpFunction function = (HttpFunction) lease(request, functionName);
+              FunctionExecutionEvent execution = new FunctionExecutionEvent();
+              execution.begin();
+              try {
+                function.service(reqImpl, respImpl);
+              } finally {
+                cancellation.finish();
+                execution.commit(functionName, SIGNATURE_TYPE, request);
+                functions.release(function);
+              }
+            });
+        span.end(response.getStatus(), null);
+        respImpl.close(
+            ResponseCloseEvent.timing(response, functionName, SIGNATURE_TYPE, callback));
+      }
     } catch (Throwable t) {
-      logger.log(Level.SEVERE, "Failed to execute " + function.getClass().getName(), t);
-      Response.writeError(request, response, callback, HttpStatus.INTERNAL_SERVER_ERROR_500, null);
+      Level level = HttpErrors.isClientError(t) ? Level.FINE : Level.SEVERE;
+      logger.log(level, "Failed to execute " + functionClass.getName(), t);
+      span.end(HttpErrors.statusFor(t), t);
+      Response.writeError(request, response, callback, HttpErrors.statusFor(t), null);
     } finally {
       Thread.currentThread().setContextClassLoader(oldContextLoader);
       executionIdUtil.removeExecutionId();
+      executionIdUtil.removeTraceContext();
     }
     return true;
   }
+
+  private Object lease(Request request, String functionName) throws InterruptedException {
+    AdmissionEvent admission = new AdmissionEvent();
+    admission.begin();
+    Object function = functions.lease();
+    admission.setPooled(functions.isPooled());
+    admission.commit(functionName, SIGNATURE_TYPE, request);
+    return function;
+  }
+
+  /**
+   * Cancels the stage returned by an {@link AsyncHttpFunction} whose invocation has been cancelled.
+   * Only a {@link CompletableFuture} can be cancelled from outside. Cancelling it completes any
+   * dependent stages that the function set up to continue the work, so they do not run.
+   */
+  private static void cancel(CompletionStage<Void> stage) {
+    if (stage instanceof CompletableFuture) {
+      ((CompletableFuture<Void>) stage).cancel(true);
+    }
+  }
+
+  /**
+   * The number of invocations that were cancelled because the client went away before the function
+   * had finished.
+   */
+  @ManagedAttribute("The number of invocations cancelled because the client disconnected")
+  public long getAbandonedInvocations() {
+    return abandoned.sum();
+  }
+
+  /**
+   * Initializes the user's function, if it implements {@link FunctionLifecycle}, before the server
+   * starts serving.
+   */
+  @Override
+  protected void doStart() throws Exception {
+    FunctionInstances.init(functions.instances());
+    super.doStart();
+  }
+
+  /** Closes the user's function, if it is {@link AutoCloseable}, when the server stops. */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    functions.instances().forEach(FunctionInstances::close);
+  }
 }
@@ -1,11 +1,21 @@
 package com.google.cloud.functions.invoker;
 
+import com.google.cloud.functions.FunctionLifecycle;
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 import com.google.cloud.functions.TypedFunction;
 import com.google.cloud.functions.TypedFunction.WireFormat;
+import com.google.cloud.functions.invoker.gcf.ExecutionIdUtil;
+import com.google.cloud.functions.invoker.http.Cancellation;
 import com.google.cloud.functions.invoker.http.HttpRequestImpl;
 import com.google.cloud.functions.invoker.http.HttpResponseImpl;
+import com.google.cloud.functions.invoker.jfr.AdmissionEvent;
+import com.google.cloud.functions.invoker.jfr.BodyReadEvent;
+import com.google.cloud.functions.invoker.jfr.FunctionExecutionEvent;
+import com.google.cloud.functions.invoker.jfr.ResponseCloseEvent;
+import com.google.cloud.functions.invoker.jfr.ResponseSerializationEvent;
+import com.google.cloud.functions.invoker.trace.Span;
+import com.google.cloud.functions.invoker.trace.Tracer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.BufferedReader;
@@ -13,6 +23,7 @@ import java.io.BufferedWriter;
 import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.jetty.http.HttpStatus;
@@ -20,23 +31,38 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 
 public class TypedFunctionExecutor extends Handler.Abstract {
   private static final String APPLY_METHOD = "apply";
   private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
+  private static final String SIGNATURE_TYPE = "typed";
 
   private final Type argType;
-  private final TypedFunction<Object, Object> function;
+  private final FunctionPool<TypedFunction<Object, Object>> functions;
   private final WireFormat format;
+  private final LongAdder abandoned = new LongAdder();
+  private final ExecutionIdUtil executionIdUtil = new ExecutionIdUtil();
+  private Tracer tracer;
 
   private TypedFunctionExecutor(
-      Type argType, TypedFunction<Object, Object> func, WireFormat format) {
+      Type argType, FunctionPool<TypedFunction<Object, Object>> functions, WireFormat format) {
     this.argType = argType;
-    this.function = func;
+    this.functions = functions;
     this.format = format;
+    addBean(functions);
   }
 
   public static TypedFunctionExecutor forClass(Class<?> functionClass) {
+    return forClass(functionClass, 0);
+  }
+
+  /**
+   * Makes a {@link TypedFunctionExecutor} for the given class, with a pool of {@code instances}
+   * instances of it if that is positive, or else if the class is annotated {@link
+   * com.google.cloud.functions.Pooled Pooled}. The wire format comes from the first instance.
+   */
+  public static TypedFunctionExecutor forClass(Class<?> functionClass, int instances) {
     if (!TypedFunction.class.isAssignableFrom(functionClass)) {
       throw new RuntimeException(
           "Class "
@@ -57,9 +83,24 @@ public class TypedFunctionExecutor extends Handler.Abstract {
               + TypedFunction.class.getName());
     }
 
-    TypedFunction<?, ?> typedFunction;
+    FunctionPool<TypedFunction<Object, Object>> functions =
+        FunctionPool.create(
+            FunctionPool.poolSize(functionClass, instances), () -> construct(typedFunctionClass));
+
+    WireFormat format = functions.any().getWireFormat();
+    if (format == null) {
+      format = LazyDefaultFormatHolder.defaultFormat;
+    }
+
+    return new TypedFunctionExecutor(argType.orElseThrow(), functions, format);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static TypedFunction<Object, Object> construct(
+      Class<? extends TypedFunction<?, ?>> typedFunctionClass) {
     try {
-      typedFunction = typedFunctionClass.getDeclaredConstructor().newInstance();
+      return (TypedFunction<Object, Object>)
+          typedFunctionClass.getDeclaredConstructor().newInstance();
     } catch (Exception e) {
       throw new RuntimeException(
           "Class "
@@ -68,17 +109,6 @@ public class TypedFunctionExecutor extends Handler.Abstract {
               + " function. Could not use constructor: "
               + e.toString());
     }
-
-    WireFormat format = typedFunction.getWireFormat();
-    if (format == null) {
-      format = LazyDefaultFormatHolder.defaultFormat;
-    }
-
-    @SuppressWarnings("unchecked")
-    TypedFunctionExecutor executor =
-        new TypedFunctionExecutor(
-            argType.orElseThrow(), (TypedFunction<Object, Object>) typedFunction, format);
-    return executor;
   }
 
   /**
@@ -94,51 +124,150 @@ public class TypedFunctionExecutor extends Handler.Abstract {
         .findFirst();
   }
 
+  /**
+   * Makes this executor record a span for each invocation with the given tracer, with a span for
+   * each of deserializing the request, applying the function and serializing the response. This
+   * must be called before the server is started.
+   *
+   * @return this executor.
+   */
+  public TypedFunctionExecutor withTracing(Tracer tracer) {
+    this.tracer = tracer;
+    return this;
+  }
+
   /** Executes the user's method, can handle all HTTP type methods. */
   @Override
   public boolean handle(Request req, Response res, Callback callback) throws Exception {
     HttpRequestImpl reqImpl = new HttpRequestImpl(req);
     HttpResponseImpl resImpl = new HttpResponseImpl(res);
+    Class<?> functionClass = functions.any().getClass();
+    Span span =
+        tracer == null
+            ? Span.NOOP
+            : tracer.startServerSpan(functionClass.getName(), req.getHeaders());
     ClassLoader oldContextClassLoader = Thread.currentThread().getContextClassLoader();
 
     try {
-      Thread.currentThread().setContextClassLoader(function.getClass().getClassLoader());
-      handleRequest(reqImpl, resImpl);
-      resImpl.close(callback);
+      executionIdUtil.storeExecutionId(req);
+      executionIdUtil.storeTraceContext(req, span);
+      Thread.currentThread().setContextClassLoader(functionClass.getClassLoader());
+      Cancellation cancellation = Cancellation.of(req);
+      cancellation.cancelOnFailure(req, abandoned::increment);
+      try {
+        cancellation.runInterruptibly(
+            () -> {
+              AdmissionEvent admission = new AdmissionEvent();
+              admission.begin();
+              TypedFunction<Object, Object> function = functions.lease();
+              admission.setPooled(functions.isPooled());
+              admission.commit(functionClass.getName(), SIGNATURE_TYPE, req);
+              try {
+                handleRequest(function, req, reqImpl, resImpl, span);
+              } finally {
+                functions.release(function);
+              }
+            });
+      } finally {
+        cancellation.finish();
+      }
+      span.end(res.getStatus(), null);
+      resImpl.close(
+          ResponseCloseEvent.timing(res, functionClass.getName(), SIGNATURE_TYPE, callback));
     } catch (Throwable t) {
+      span.end(HttpStatus.INTERNAL_SERVER_ERROR_500, t);
       Response.writeError(req, res, callback, HttpStatus.INTERNAL_SERVER_ERROR_500, null, t);
     } finally {
       Thread.currentThread().setContextClassLoader(oldContextClassLoader);
+      executionIdUtil.removeExecutionId();
+      executionIdUtil.removeTraceContext();
     }
     return true;
   }
 
-  private void handleRequest(HttpRequest req, HttpResponse res) {
+  /**
+   * The number of invocations that were cancelled because the client went away before the function
+   * had finished.
+   */
+  @ManagedAttribute("The number of invocations cancelled because the client disconnected")
+  public long getAbandonedInvocations() {
+    return abandoned.sum();
+  }
+
+  /**
+   * Initializes the user's function, if it implements {@link FunctionLifecycle}, before the server
+   * starts serving.
+   */
+  @Override
+  protected void doStart() throws Exception {
+    FunctionInstances.init(functions.instances());
+    super.doStart();
+  }
+
+  /** Closes the user's function, if it is {@link AutoCloseable}, when the server stops. */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    functions.instances().forEach(FunctionInstances::close);
+  }
+
+  private void handleRequest(
+      TypedFunction<Object, Object> function,
+      Request request,
+      HttpRequest req,
+      HttpResponseImpl res,
+      Span span) {
+    String functionName = function.getClass().getName();
     Object reqObj;
+    Span phase = span.child("deserialize");
+    BodyReadEvent bodyRead = new BodyReadEvent();
+    bodyRead.begin();
     try {
       reqObj = format.deserialize(req, argType);
     } catch (Throwable t) {
+      phase.setError(t);
       logger.log(Level.SEVERE, "Failed to parse request for " + function.getClass().getName(), t);
-      res.setStatusCode(HttpStatus.BAD_REQUEST_400);
+      int status = HttpErrors.statusFor(t);
+      res.setStatusCode(
+          status == HttpStatus.INTERNAL_SERVER_ERROR_500 ? HttpStatus.BAD_REQUEST_400 : status);
       return;
+    } finally {
+      phase.end();
+      bodyRead.setBytes(request.getLength());
+      bodyRead.commit(functionName, SIGNATURE_TYPE, request);
     }
 
     Object resObj;
+    phase = span.child("apply");
+    FunctionExecutionEvent execution = new FunctionExecutionEvent();
+    execution.begin();
     try {
       resObj = function.apply(reqObj);
     } catch (Throwable t) {
+      phase.setError(t);
       logger.log(Level.SEVERE, "Failed to execute " + function.getClass().getName(), t);
       res.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR_500);
       return;
+    } finally {
+      phase.end();
+      execution.commit(functionName, SIGNATURE_TYPE, request);
     }
 
+    phase = span.child("serialize");
+    ResponseSerializationEvent serialization = new ResponseSerializationEvent();
+    serialization.begin();
     try {
       format.serialize(resObj, res);
     } catch (Throwable t) {
+      phase.setError(t);
       logger.log(
           Level.SEVERE, "Failed to serialize response for " + function.getClass().getName(), t);
       res.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR_500);
       return;
+    } finally {
+      phase.end();
+      serialization.setBytes(res.getContentBytes());
+      serialization.commit(functionName, SIGNATURE_TYPE, request);
     }
   }
 
@@ -0,0 +1,236 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import com.google.cloud.functions.FunctionLifecycle;
+import com.google.cloud.functions.WebSocketFunction;
+import com.google.cloud.functions.WebSocketSession;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.server.ServerUpgradeRequest;
+import org.eclipse.jetty.websocket.server.ServerUpgradeResponse;
+import org.eclipse.jetty.websocket.server.WebSocketCreator;
+import org.eclipse.jetty.websocket.server.WebSocketUpgradeHandler;
+
+/**
+ * Executes the user's {@link WebSocketFunction}. WebSocket upgrade requests are accepted by the
+ * {@link WebSocketUpgradeHandler} returned by {@link #withUpgradeHandler}, which creates a session
+ * endpoint for each connection. Any other request reaches this handler and is rejected, since the
+ * function has no way to answer it.
+ */
+public class WebSocketFunctionExecutor extends Handler.Abstract implements WebSocketCreator {
+  private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
+
+  private final WebSocketFunction function;
+
+  private WebSocketFunctionExecutor(WebSocketFunction function) {
+    this.function = function;
+  }
+
+  /**
+   * Makes a {@link WebSocketFunctionExecutor} for the given class.
+   *
+   * @throws RuntimeException if either the given class does not implement {@link
+   *     WebSocketFunction} or we are unable to construct an instance using its no-arg constructor.
+   */
+  public static WebSocketFunctionExecutor forClass(Class<?> functionClass) {
+    if (!WebSocketFunction.class.isAssignableFrom(functionClass)) {
+      throw new RuntimeException(
+          "Class "
+              + functionClass.getName()
+              + " does not implement "
+              + WebSocketFunction.class.getName());
+    }
+    Class<? extends WebSocketFunction> webSocketFunctionClass =
+        functionClass.asSubclass(WebSocketFunction.class);
+    ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
+    try {
+      Thread.currentThread().setContextClassLoader(webSocketFunctionClass.getClassLoader());
+      WebSocketFunction webSocketFunction = webSocketFunctionClass.getConstructor().newInstance();
+      return new WebSocketFunctionExecutor(webSocketFunction);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(
+          "Could not construct an instance of " + functionClass.getName() + ": " + e, e);
+    } finally {
+      Thread.currentThread().setContextClassLoader(oldContextLoader);
+    }
+  }
+
+  /**
+   * Returns a handler that upgrades WebSocket requests on any path to sessions of this function,
+   * and passes other requests on to this executor.
+   */
+  public Handler withUpgradeHandler(Server server) {
+    WebSocketUpgradeHandler upgradeHandler =
+        WebSocketUpgradeHandler.from(server, container -> container.addMapping("/*", this));
+    upgradeHandler.setHandler(this);
+    return upgradeHandler;
+  }
+
+  /** Rejects a request that is not a WebSocket upgrade. */
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) {
+    response.getHeaders().put(HttpHeader.UPGRADE, "websocket");
+    Response.writeError(
+        request,
+        response,
+        callback,
+        HttpStatus.UPGRADE_REQUIRED_426,
+        "This function only accepts WebSocket connections");
+    return true;
+  }
+
+  /**
+   * Initializes the user's function, if it implements {@link FunctionLifecycle}, before the server
+   * starts serving.
+   */
+  @Override
+  protected void doStart() throws Exception {
+    FunctionInstances.init(List.of(function));
+    super.doStart();
+  }
+
+  /** Closes the user's function, if it is {@link AutoCloseable}, when the server stops. */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    FunctionInstances.close(function);
+  }
+
+  @Override
+  public Object createWebSocket(
+      ServerUpgradeRequest request, ServerUpgradeResponse response, Callback callback) {
+    return new Endpoint();
+  }
+
+  /**
+   * The Jetty endpoint for one session. Jetty calls its methods one at a time, and demands the next
+   * frame automatically when each method returns. The class has to be public because Jetty calls
+   * its methods through method handles.
+   */
+  public class Endpoint implements Session.Listener.AutoDemanding {
+    private SessionImpl session;
+
+    @Override
+    public void onWebSocketOpen(Session jettySession) {
+      session = new SessionImpl(jettySession);
+      invoke(() -> function.onOpen(session));
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+      invoke(() -> function.onMessage(session, message));
+    }
+
+    @Override
+    public void onWebSocketBinary(
+        ByteBuffer message, org.eclipse.jetty.websocket.api.Callback callback) {
+      try {
+        invoke(() -> function.onBinaryMessage(session, message));
+      } finally {
+        callback.succeed();
+      }
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+      logger.log(Level.FINE, "WebSocket session failed", cause);
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+      invoke(() -> function.onClose(session, statusCode, reason));
+    }
+
+    private void invoke(FunctionCall call) {
+      ClassLoader oldContextLoader = Thread.currentThread().getContextClassLoader();
+      try {
+        Thread.currentThread().setContextClassLoader(function.getClass().getClassLoader());
+        call.run();
+      } catch (Throwable t) {
+        logger.log(Level.SEVERE, "Failed to execute " + function.getClass().getName(), t);
+        session.close(StatusCode.SERVER_ERROR, "Function failed");
+      } finally {
+        Thread.currentThread().setContextClassLoader(oldContextLoader);
+      }
+    }
+  }
+
+  private interface FunctionCall {
+    void run() throws Exception;
+  }
+
+  private static class SessionImpl implements WebSocketSession {
+    private final Session session;
+
+    SessionImpl(Session session) {
+      this.session = session;
+    }
+
+    @Override
+    public String getUri() {
+      return session.getUpgradeRequest().getRequestURI().toString();
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      return session.getUpgradeRequest().getHeaders();
+    }
+
+    @Override
+    public CompletionStage<Void> sendText(String message) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      session.sendText(message, callback(future));
+      return future;
+    }
+
+    @Override
+    public CompletionStage<Void> sendBinary(ByteBuffer message) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      session.sendBinary(message, callback(future));
+      return future;
+    }
+
+    @Override
+    public void close(int statusCode, String reason) {
+      session.close(statusCode, reason, org.eclipse.jetty.websocket.api.Callback.NOOP);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return session.isOpen();
+    }
+
+    private static org.eclipse.jetty.websocket.api.Callback callback(
+        CompletableFuture<Void> future) {
+      return org.eclipse.jetty.websocket.api.Callback.from(
+          () -> future.complete(null), future::completeExceptionally);
+    }
+  }
+}
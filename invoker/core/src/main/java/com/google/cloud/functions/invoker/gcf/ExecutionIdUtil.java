@@ -1,5 +1,7 @@
 package com.google.cloud.functions.invoker.gcf;
 
+import com.google.cloud.functions.invoker.trace.Span;
+import com.google.cloud.functions.invoker.trace.TraceContext;
 import java.util.Base64;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
@@ -16,6 +18,7 @@ public final class ExecutionIdUtil {
   private static final int EXECUTION_ID_LENGTH = 12;
   private static final String EXECUTION_ID_HTTP_HEADER = "HTTP_FUNCTION_EXECUTION_ID";
   private static final String LOG_EXECUTION_ID_ENV_NAME = "LOG_EXECUTION_ID";
+  private static final String LOG_TRACE_CONTEXT_ENV_NAME = "LOG_TRACE_CONTEXT";
 
   private final Random random = ThreadLocalRandom.current();
 
@@ -47,8 +50,55 @@ public final class ExecutionIdUtil {
     }
   }
 
+  /**
+   * Add mapping to root logger from current thread id to the trace that the request belongs to.
+   * This mapping will be used to append the trace and span ids to log lines. If {@code span} is
+   * being recorded, log lines are correlated with it, and otherwise, if trace context logging is
+   * enabled, with the caller's span.
+   */
+  public void storeTraceContext(Request request, Span span) {
+    String traceId;
+    String spanId;
+    boolean sampled;
+    if (span.isRecording()) {
+      traceId = span.getTraceId();
+      spanId = span.getSpanId();
+      sampled = true;
+    } else if (traceContextLoggingEnabled()) {
+      TraceContext context = TraceContext.fromHeaders(request.getHeaders());
+      if (context == null) {
+        return;
+      }
+      traceId = context.getTraceId();
+      spanId = context.getSpanId();
+      sampled = context.isSampled();
+    } else {
+      return;
+    }
+    for (Handler handler : rootLogger.getHandlers()) {
+      if (handler instanceof JsonLogHandler) {
+        ((JsonLogHandler) handler)
+            .addTraceContext(Thread.currentThread().getId(), traceId, spanId, sampled);
+      }
+    }
+  }
+
+  /** Remove mapping from current thread to request trace */
+  public void removeTraceContext() {
+    for (Handler handler : rootLogger.getHandlers()) {
+      if (handler instanceof JsonLogHandler) {
+        ((JsonLogHandler) handler).removeTraceContext(Thread.currentThread().getId());
+      }
+    }
+  }
+
+  /** Returns the execution id that the request carries in its headers, or null if it has none. */
+  public static String getExecutionIdHeader(Request request) {
+    return request.getHeaders().get(EXECUTION_ID_HTTP_HEADER);
+  }
+
   private String getOrGenerateExecutionId(Request request) {
-    String executionId = request.getHeaders().get(EXECUTION_ID_HTTP_HEADER);
+    String executionId = getExecutionIdHeader(request);
     if (executionId == null) {
       byte[] array = new byte[EXECUTION_ID_LENGTH];
       random.nextBytes(array);
@@ -60,4 +110,8 @@ public final class ExecutionIdUtil {
   private boolean executionIdLoggingEnabled() {
     return Boolean.parseBoolean(System.getenv().getOrDefault(LOG_EXECUTION_ID_ENV_NAME, "false"));
   }
+
+  private boolean traceContextLoggingEnabled() {
+    return Boolean.parseBoolean(System.getenv().getOrDefault(LOG_TRACE_CONTEXT_ENV_NAME, "false"));
+  }
 }
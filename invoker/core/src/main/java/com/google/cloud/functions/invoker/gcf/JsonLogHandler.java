@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -18,6 +19,11 @@ import java.util.logging.LogRecord;
 public final class JsonLogHandler extends Handler {
   private static final String SOURCE_LOCATION_KEY = "\"logging.googleapis.com/sourceLocation\": ";
   private static final String LOG_EXECUTION_ID_ENV_NAME = "LOG_EXECUTION_ID";
+  private static final String TRACE_KEY = "\"logging.googleapis.com/trace\": \"";
+  private static final String SPAN_ID_KEY = "\"logging.googleapis.com/spanId\": \"";
+  private static final String TRACE_SAMPLED_KEY = "\"logging.googleapis.com/trace_sampled\": ";
+  // Cloud Logging links a log entry to its trace when the trace is named with the project.
+  private static final String TRACE_PREFIX = tracePrefix(System.getenv("GOOGLE_CLOUD_PROJECT"));
 
   private static final String DEBUG = "DEBUG";
   private static final String INFO = "INFO";
@@ -27,6 +33,7 @@ public final class JsonLogHandler extends Handler {
 
   private final PrintStream out;
   private final boolean closePrintStreamOnClose;
+  private final LongAdder recordsWritten = new LongAdder();
   // This map is used to track execution id for currently running Jetty requests. Mapping thread
   // id to request works because of an implementation detail of Jetty thread pool handling.
   // Jetty worker threads completely handle a request before beginning work on a new request.
@@ -35,6 +42,10 @@ public final class JsonLogHandler extends Handler {
   // Jetty Documentation (https://jetty.org/docs/jetty/10/programming-guide/arch/threads.html)
   private static final ConcurrentMap<String, String> executionIdByThreadMap =
       new ConcurrentHashMap<>();
+  // Likewise for the trace fields of currently running requests, which are formatted once per
+  // request rather than once per log line.
+  private static final ConcurrentMap<String, String> traceFieldsByThreadMap =
+      new ConcurrentHashMap<>();
 
   public JsonLogHandler(PrintStream out, boolean closePrintStreamOnClose) {
     this.out = out;
@@ -50,10 +61,17 @@ public final class JsonLogHandler extends Handler {
     appendSeverity(json, record);
     appendSourceLocation(json, record);
     appendExecutionId(json, record);
+    appendTraceFields(json, record);
     appendMessage(json, record); // must be last, see appendMessage
     json.append("}");
     // We must output the log all at once (should only call println once per call to publish)
     out.println(json);
+    recordsWritten.increment();
+  }
+
+  /** The number of log records that this handler has written. */
+  public long getRecordsWritten() {
+    return recordsWritten.sum();
   }
 
   private static void appendMessage(StringBuilder json, LogRecord record) {
@@ -116,6 +134,21 @@ public final class JsonLogHandler extends Handler {
     }
   }
 
+  private static void appendTraceFields(StringBuilder json, LogRecord record) {
+    // Without this check every log line would pay for a map lookup even when nothing is traced.
+    if (traceFieldsByThreadMap.isEmpty()) {
+      return;
+    }
+    String fields = traceFieldsByThreadMap.get(Integer.toString(record.getThreadID()));
+    if (fields != null) {
+      json.append(fields);
+    }
+  }
+
+  private static String tracePrefix(String project) {
+    return project == null || project.isEmpty() ? "" : "projects/" + project + "/traces/";
+  }
+
   private static String escapeString(String s) {
     return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
   }
@@ -146,6 +179,24 @@ public final class JsonLogHandler extends Handler {
     executionIdByThreadMap.remove(Long.toString(threadId));
   }
 
+  /**
+   * Adds the trace that the request on the given thread belongs to, so that its log lines are
+   * correlated with the trace and, if {@code spanId} is not null, with that span.
+   */
+  public void addTraceContext(long threadId, String traceId, String spanId, boolean sampled) {
+    StringBuilder fields = new StringBuilder();
+    fields.append(TRACE_KEY).append(escapeString(TRACE_PREFIX + traceId)).append("\", ");
+    if (spanId != null) {
+      fields.append(SPAN_ID_KEY).append(escapeString(spanId)).append("\", ");
+    }
+    fields.append(TRACE_SAMPLED_KEY).append(sampled).append(", ");
+    traceFieldsByThreadMap.put(Long.toString(threadId), fields.toString());
+  }
+
+  public void removeTraceContext(long threadId) {
+    traceFieldsByThreadMap.remove(Long.toString(threadId));
+  }
+
   private boolean executionIdLoggingEnabled() {
     return Boolean.parseBoolean(System.getenv().getOrDefault(LOG_EXECUTION_ID_ENV_NAME, "false"));
   }
@@ -0,0 +1,96 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * A complete response that the function wrote, kept so that it can be written again as the
+ * response to other requests.
+ */
+final class BufferedResponse {
+  /** Headers that describe one transfer of the body rather than the response, and are not kept. */
+  private static final Set<HttpHeader> TRANSFER_HEADERS =
+      Set.of(
+          HttpHeader.CONTENT_LENGTH,
+          HttpHeader.TRANSFER_ENCODING,
+          HttpHeader.CONNECTION,
+          HttpHeader.DATE,
+          HttpHeader.SERVER);
+
+  private final int status;
+  private final HttpFields headers;
+  private final ByteBuffer body;
+
+  private BufferedResponse(int status, HttpFields headers, ByteBuffer body) {
+    this.status = status;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  /**
+   * Copies the status and headers of {@code response}, which must be complete, together with its
+   * {@code body}. The body is kept in a direct buffer if {@code direct} is true.
+   */
+  static BufferedResponse of(Response response, byte[] body, boolean direct) {
+    HttpFields.Mutable headers = HttpFields.build();
+    for (HttpField field : response.getHeaders()) {
+      if (field.getHeader() == null || !TRANSFER_HEADERS.contains(field.getHeader())) {
+        headers.add(field);
+      }
+    }
+    ByteBuffer buffer =
+        direct ? ByteBuffer.allocateDirect(body.length) : ByteBuffer.allocate(body.length);
+    buffer.put(body).flip();
+    return new BufferedResponse(response.getStatus(), headers.asImmutable(), buffer);
+  }
+
+  int status() {
+    return status;
+  }
+
+  /** The size of the body in bytes. */
+  int size() {
+    return body.capacity();
+  }
+
+  /** The size of the header names and values, counting each character as two bytes. */
+  long headersSize() {
+    long size = 0;
+    for (HttpField field : headers) {
+      size += 2L * (field.getName().length() + field.getValue().length());
+    }
+    return size;
+  }
+
+  /** Writes this response as the complete response to another request. */
+  void writeTo(Response response, Callback callback) {
+    response.setStatus(status);
+    HttpFields.Mutable responseHeaders = response.getHeaders();
+    for (HttpField field : headers) {
+      responseHeaders.add(field);
+    }
+    responseHeaders.put(HttpHeader.CONTENT_LENGTH, body.capacity());
+    // Each response gets its own view of the buffer, so concurrent writes do not disturb each
+    // other's position.
+    response.write(true, body.asReadOnlyBuffer(), callback);
+  }
+}
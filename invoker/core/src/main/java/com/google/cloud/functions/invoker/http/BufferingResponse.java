@@ -0,0 +1,68 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * A response that keeps a copy of the content written through it, as long as that stays within a
+ * limit, and hands the copy to {@link #onComplete} when the last of the content is written. That
+ * happens before the last write goes to the network, so a client that sends another request as soon
+ * as it has the response sees the effect of {@link #onComplete}.
+ */
+abstract class BufferingResponse extends Response.Wrapper {
+  private final long maxBytes;
+  private ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+  BufferingResponse(Request request, Response wrapped, long maxBytes) {
+    super(request, wrapped);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Called with the complete body, when it is no larger than the limit. The status and headers can
+   * no longer change, so {@link BufferedResponse#of} can copy them.
+   */
+  abstract void onComplete(byte[] body);
+
+  @Override
+  public void write(boolean last, ByteBuffer content, Callback callback) {
+    byte[] complete = null;
+    synchronized (this) {
+      if (body != null && content != null) {
+        if (body.size() + content.remaining() > maxBytes) {
+          body = null;
+        } else {
+          // Copy now, because the buffer may be reused once the write completes.
+          byte[] copy = BufferUtil.toArray(content);
+          body.write(copy, 0, copy.length);
+        }
+      }
+      if (last && body != null) {
+        complete = body.toByteArray();
+        body = null;
+      }
+    }
+    if (complete != null) {
+      onComplete(complete);
+    }
+    super.write(last, content, callback);
+  }
+}
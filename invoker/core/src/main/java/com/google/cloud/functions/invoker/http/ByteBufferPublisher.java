@@ -0,0 +1,67 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import org.eclipse.jetty.io.Content;
+
+/**
+ * Adapts Jetty's publisher of request content chunks to a publisher of the {@link ByteBuffer}s
+ * they contain. Jetty reads a chunk only when the subscriber has demand, and releases it once
+ * {@code onNext} returns, so buffers are handed over without copying.
+ */
+class ByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+  private final Flow.Publisher<Content.Chunk> chunks;
+
+  ByteBufferPublisher(Flow.Publisher<Content.Chunk> chunks) {
+    this.chunks = chunks;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+    chunks.subscribe(
+        new Flow.Subscriber<Content.Chunk>() {
+          private Flow.Subscription subscription;
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscriber.onSubscribe(subscription);
+          }
+
+          @Override
+          public void onNext(Content.Chunk chunk) {
+            if (chunk.hasRemaining()) {
+              subscriber.onNext(chunk.getByteBuffer().asReadOnlyBuffer());
+            } else if (!chunk.isLast()) {
+              // An empty chunk used up one unit of the subscriber's demand without delivering
+              // anything, so ask for another in its place.
+              subscription.request(1);
+            }
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+          }
+
+          @Override
+          public void onComplete() {
+            subscriber.onComplete();
+          }
+        });
+  }
+}
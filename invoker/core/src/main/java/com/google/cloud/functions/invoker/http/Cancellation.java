@@ -0,0 +1,169 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * The deadline and cancellation state of one invocation of the function. Handlers in front of the
+ * executors, such as {@link TimeoutHandler}, set the deadline and cancel the invocation. The
+ * executors run the function through {@link #runInterruptibly}, so that cancelling interrupts the
+ * thread that is running it, and register {@linkplain #onCancel listeners} to release anything
+ * else the invocation holds. Once the function has returned, or its stage has completed, the
+ * executors call {@link #finish}, after which the invocation can no longer be cancelled.
+ */
+public final class Cancellation {
+  private static final String ATTRIBUTE = Cancellation.class.getName();
+
+  private volatile Instant deadline;
+
+  // Everything below is guarded by this.
+  private Throwable reason;
+  private boolean finished;
+  private Thread thread;
+  private final List<Runnable> listeners = new ArrayList<>();
+
+  Cancellation() {}
+
+  /**
+   * Returns the cancellation state of the given request, creating it the first time. This must
+   * first be called on the thread that is handling the request, before the function is called.
+   */
+  public static Cancellation of(Request request) {
+    Cancellation cancellation = (Cancellation) request.getAttribute(ATTRIBUTE);
+    if (cancellation == null) {
+      cancellation = new Cancellation();
+      request.setAttribute(ATTRIBUTE, cancellation);
+    }
+    return cancellation;
+  }
+
+  /** The time by which the invocation must finish, if there is one. */
+  public Optional<Instant> deadline() {
+    return Optional.ofNullable(deadline);
+  }
+
+  public void setDeadline(Instant deadline) {
+    this.deadline = deadline;
+  }
+
+  public synchronized boolean isCancelled() {
+    return reason != null;
+  }
+
+  /**
+   * Runs {@code listener} when the invocation is cancelled, or straight away if it already has
+   * been. The listener is never run if the invocation finishes first.
+   */
+  public void onCancel(Runnable listener) {
+    synchronized (this) {
+      if (finished) {
+        return;
+      }
+      if (reason == null) {
+        listeners.add(listener);
+        return;
+      }
+    }
+    listener.run();
+  }
+
+  /**
+   * Cancels the invocation, if that has not already happened. The thread running the function, if
+   * any, is interrupted, and then the listeners are run.
+   *
+   * @return true if this call cancelled the invocation, false if it had already been cancelled or
+   *     had finished.
+   */
+  public boolean cancel(Throwable reason) {
+    List<Runnable> toRun;
+    synchronized (this) {
+      if (this.reason != null || finished) {
+        return false;
+      }
+      this.reason = reason;
+      if (thread != null) {
+        thread.interrupt();
+      }
+      toRun = new ArrayList<>(listeners);
+      listeners.clear();
+    }
+    toRun.forEach(Runnable::run);
+    return true;
+  }
+
+  /**
+   * Marks the function as having finished with the invocation. Cancelling does nothing after this,
+   * so a failure while the response is being written is not counted as an abandoned invocation.
+   */
+  public void finish() {
+    synchronized (this) {
+      finished = true;
+      listeners.clear();
+    }
+  }
+
+  /**
+   * Cancels the invocation if {@code request} fails while the function is still handling it. That
+   * usually means that the client has disconnected, so nobody will read the response. Then {@code
+   * onAbandoned} is run, unless the invocation had already been cancelled for another reason such
+   * as a timeout.
+   */
+  public void cancelOnFailure(Request request, Runnable onAbandoned) {
+    request.addFailureListener(
+        failure -> {
+          if (cancel(failure)) {
+            onAbandoned.run();
+          }
+        });
+  }
+
+  /**
+   * Runs {@code task} on the current thread, arranging for the thread to be interrupted if the
+   * invocation is cancelled meanwhile. The thread is never interrupted after the task returns, and
+   * an interrupt caused by cancelling is cleared before this method returns, so the server's thread
+   * pool does not see it.
+   */
+  public void runInterruptibly(Task task) throws Exception {
+    synchronized (this) {
+      if (reason != null) {
+        Thread.currentThread().interrupt();
+      }
+      thread = Thread.currentThread();
+    }
+    try {
+      task.run();
+    } finally {
+      boolean cancelled;
+      synchronized (this) {
+        thread = null;
+        cancelled = reason != null;
+      }
+      if (cancelled) {
+        Thread.interrupted();
+      }
+    }
+  }
+
+  /** A task that can throw a checked exception. */
+  @FunctionalInterface
+  public interface Task {
+    void run() throws Exception;
+  }
+}
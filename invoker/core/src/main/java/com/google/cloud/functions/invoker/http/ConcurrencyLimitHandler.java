@@ -0,0 +1,192 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Limits the number of requests that the wrapped handler executes at the same time, and adjusts
+ * the limit according to how long requests take. A request that arrives when the limit has been
+ * reached is rejected straight away with status 429, so the client can retry elsewhere rather than
+ * waiting in a queue.
+ *
+ * <p>The limit follows the gradient between the shortest latency seen recently, which is what a
+ * request costs when the function is not overloaded, and the average latency of the latest
+ * requests. While the two are close the limit grows, and as queueing makes the average latency rise
+ * the limit shrinks. This keeps the instance near the concurrency where it has the most throughput,
+ * whether the function is I/O-bound and benefits from many concurrent requests or CPU-bound and
+ * does not.
+ */
+@ManagedObject("Adaptive concurrency limit")
+public class ConcurrencyLimitHandler extends Handler.Wrapper {
+  private final GradientLimit limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * Creates a handler whose limit starts at {@code initialLimit} and stays between {@code
+   * minLimit} and {@code maxLimit}.
+   */
+  public ConcurrencyLimitHandler(int minLimit, int initialLimit, int maxLimit, Handler handler) {
+    setHandler(handler);
+    limit = new GradientLimit(minLimit, initialLimit, maxLimit);
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    int current = inFlight.incrementAndGet();
+    if (current > limit.get()) {
+      inFlight.decrementAndGet();
+      rejected.increment();
+      Response.writeError(request, response, callback, HttpStatus.TOO_MANY_REQUESTS_429);
+      return true;
+    }
+    long start = System.nanoTime();
+    Callback completion =
+        Callback.from(
+            () -> {
+              inFlight.decrementAndGet();
+              limit.sample(System.nanoTime() - start, current);
+            },
+            callback);
+    try {
+      if (super.handle(request, response, completion)) {
+        return true;
+      }
+    } catch (Throwable t) {
+      inFlight.decrementAndGet();
+      throw t;
+    }
+    inFlight.decrementAndGet();
+    return false;
+  }
+
+  /** The current limit on the number of requests in progress. */
+  @ManagedAttribute("The current limit on the number of requests in progress")
+  public int getLimit() {
+    return limit.get();
+  }
+
+  /** The number of requests in progress. */
+  @ManagedAttribute("The number of requests in progress")
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** The number of requests rejected because the limit had been reached. */
+  @ManagedAttribute("The number of requests rejected with status 429")
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * A concurrency limit that is recomputed after each window of requests. The window is at least
+   * {@link #MIN_WINDOW_SAMPLES} requests and grows with the limit, so that each new limit is based
+   * on a reasonable number of requests at the previous one.
+   */
+  static final class GradientLimit {
+    /** The fewest requests whose latency is averaged before the limit changes. */
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    /**
+     * The number of windows after which the no-load latency is forgotten, so that a permanent
+     * change in the function's latency, for example because a backend became slower, is not
+     * mistaken for overload forever.
+     */
+    static final int NO_LOAD_RESET_WINDOWS = 100;
+
+    /** How far the average latency may exceed the no-load latency before the limit shrinks. */
+    private static final double TOLERANCE = 1.5;
+
+    /** How much of each new limit is blended into the current one, to smooth out noise. */
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    // The limit is read without locking on every request, and written under the lock.
+    private volatile int limit;
+
+    // Everything below is guarded by this.
+    private double estimatedLimit;
+    private long noLoadRttNanos = Long.MAX_VALUE;
+    private int windowsSinceReset;
+    private long windowRttSumNanos;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    GradientLimit(int minLimit, int initialLimit, int maxLimit) {
+      if (minLimit < 1 || maxLimit < minLimit) {
+        throw new IllegalArgumentException(
+            "Invalid concurrency limits: min " + minLimit + ", max " + maxLimit);
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+      this.estimatedLimit = limit;
+    }
+
+    int get() {
+      return limit;
+    }
+
+    /**
+     * Records a request that took {@code rttNanos} and that was one of {@code inFlight} requests in
+     * progress when it started.
+     */
+    synchronized void sample(long rttNanos, int inFlight) {
+      windowRttSumNanos += rttNanos;
+      windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+      windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+      if (++windowSamples < Math.max(MIN_WINDOW_SAMPLES, limit)) {
+        return;
+      }
+
+      if (++windowsSinceReset > NO_LOAD_RESET_WINDOWS) {
+        noLoadRttNanos = windowMinRttNanos;
+        windowsSinceReset = 0;
+      } else {
+        noLoadRttNanos = Math.min(noLoadRttNanos, windowMinRttNanos);
+      }
+      double averageRttNanos = (double) windowRttSumNanos / windowSamples;
+      double gradient =
+          Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRttNanos / Math.max(1, averageRttNanos)));
+      double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+      if (gradient == 1.0 && windowMaxInFlight * 2 < estimatedLimit) {
+        // Traffic did not come near the limit, so the latency says nothing about whether the
+        // function could handle more. Growing now would let the limit drift far above anything
+        // that has been tested.
+        newLimit = estimatedLimit;
+      }
+      estimatedLimit = (1 - SMOOTHING) * estimatedLimit + SMOOTHING * newLimit;
+      estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+      limit = (int) estimatedLimit;
+
+      windowRttSumNanos = 0;
+      windowMinRttNanos = Long.MAX_VALUE;
+      windowSamples = 0;
+      windowMaxInFlight = 0;
+    }
+  }
+}
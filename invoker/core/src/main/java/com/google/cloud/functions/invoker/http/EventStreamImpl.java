@@ -0,0 +1,77 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import com.google.cloud.functions.HttpResponse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Writes <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html">Server-Sent
+ * Events</a> to a response. Each event is sent with {@link HttpResponse#writeAsync}, so it reaches
+ * the client as soon as it is written, and only one event is ever buffered.
+ */
+class EventStreamImpl implements HttpResponse.EventStream {
+  private final HttpResponse response;
+
+  EventStreamImpl(HttpResponse response) {
+    this.response = response;
+  }
+
+  @Override
+  public void send(String event, String data) throws IOException {
+    try {
+      sendAsync(event, data).toCompletableFuture().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while sending event");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> sendAsync(String event, String data) {
+    return response.writeAsync(encode(event, data));
+  }
+
+  static ByteBuffer encode(String event, String data) {
+    StringBuilder text = new StringBuilder();
+    if (event != null) {
+      checkSingleLine(event);
+      text.append("event: ").append(event).append('\n');
+    }
+    // A line break inside the data would end the field, so each line becomes its own data field.
+    // The client joins them back together with \n.
+    for (String line : data.split("\r\n|\r|\n", -1)) {
+      text.append("data: ").append(line).append('\n');
+    }
+    text.append('\n');
+    return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void checkSingleLine(String field) {
+    if (field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+      throw new IllegalArgumentException("Event type must not contain a line break: " + field);
+    }
+  }
+}
@@ -19,26 +19,41 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Flow;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.MultiPart;
 import org.eclipse.jetty.http.MultiPart.Part;
 import org.eclipse.jetty.http.MultiPartFormData;
 import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Fields;
 
 public class HttpRequestImpl implements HttpRequest {
   private final Request request;
   private InputStream inputStream;
   private BufferedReader reader;
+  private boolean bodyPublished;
+  private List<HttpPartImpl> parsedParts;
+  private Map<String, HttpPart> parts;
+  private StreamingPartIterator partIterator;
 
   public HttpRequestImpl(Request request) {
     this.request = request;
@@ -79,25 +94,76 @@ public class HttpRequestImpl implements HttpRequest {
 
   @Override
   public Map<String, HttpPart> getParts() {
+    checkMultipart();
+    if (parts == null) {
+      Map<String, HttpPart> map = new HashMap<>();
+      if (partIterator == null && MultiPartFormData.getParts(request) == null) {
+        // The request is being streamed, but the function wants all the parts at once, so we read
+        // each one into memory.
+        Iterator<HttpPart> iterator = getPartIterator();
+        while (iterator.hasNext()) {
+          HttpPart part = iterator.next();
+          map.put(part.getName(), bufferPart(part));
+        }
+      } else {
+        parsedParts().forEach(part -> map.put(part.getName(), part));
+      }
+      parts = map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+    }
+    return parts;
+  }
+
+  @Override
+  public Iterator<HttpPart> getPartIterator() {
+    checkMultipart();
+    if (MultiPartFormData.getParts(request) != null) {
+      return Collections.<HttpPart>unmodifiableList(parsedParts()).iterator();
+    }
+    if (partIterator != null || parts != null) {
+      throw new IllegalStateException("Multipart request has already been read");
+    }
+    if (inputStream != null || bodyPublished) {
+      throw new IllegalStateException("Request body has already been read");
+    }
+    String boundary = MultiPart.extractBoundary(request.getHeaders().get(HttpHeader.CONTENT_TYPE));
+    partIterator = new StreamingPartIterator(request, boundary);
+    return partIterator;
+  }
+
+  private void checkMultipart() {
     String contentType = request.getHeaders().get(HttpHeader.CONTENT_TYPE);
     if (contentType == null
         || !contentType.startsWith(MimeTypes.Type.MULTIPART_FORM_DATA.asString())) {
       throw new IllegalStateException("Content-Type must be multipart/form-data: " + contentType);
     }
+  }
 
-    // The multipart parsing is done by the EagerContentHandler, so we just call getParts.
-    MultiPartFormData.Parts parts = MultiPartFormData.getParts(request);
-    if (parts == null) {
-      throw new IllegalStateException();
+  /** The parts that were parsed by the EagerContentHandler before the function was called. */
+  private List<HttpPartImpl> parsedParts() {
+    if (parsedParts == null) {
+      MultiPartFormData.Parts jettyParts = MultiPartFormData.getParts(request);
+      if (jettyParts == null) {
+        throw new IllegalStateException(
+            "The parts were already streamed with getPartIterator(), so they are no longer"
+                + " available from getParts()");
+      }
+      parsedParts = new ArrayList<>(jettyParts.size());
+      jettyParts.forEach(part -> parsedParts.add(new HttpPartImpl(part)));
     }
+    return parsedParts;
+  }
 
-    if (parts.size() == 0) {
-      return Collections.emptyMap();
+  private static HttpPart bufferPart(HttpPart part) {
+    HttpFields.Mutable headers = HttpFields.build();
+    part.getHeaders().forEach((name, values) -> values.forEach(value -> headers.add(name, value)));
+    try (InputStream in = part.getInputStream()) {
+      ByteBuffer content = ByteBuffer.wrap(in.readAllBytes());
+      return new HttpPartImpl(
+          new MultiPart.ByteBufferPart(
+              part.getName(), part.getFileName().orElse(null), headers, content));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-
-    Map<String, HttpPart> map = new HashMap<>();
-    parts.forEach(part -> map.put(part.getName(), new HttpPartImpl(part)));
-    return Collections.unmodifiableMap(map);
   }
 
   @Override
@@ -121,6 +187,12 @@ public class HttpRequestImpl implements HttpRequest {
     if (reader != null) {
       throw new IllegalStateException("getReader() already called");
     }
+    if (bodyPublished) {
+      throw new IllegalStateException("getBodyPublisher() already called");
+    }
+    if (partIterator != null) {
+      throw new IllegalStateException("getPartIterator() already called");
+    }
     if (inputStream == null) {
       inputStream = Content.Source.asInputStream(request);
     }
@@ -133,6 +205,12 @@ public class HttpRequestImpl implements HttpRequest {
       if (inputStream != null) {
         throw new IllegalStateException("getInputStream already called");
       }
+      if (bodyPublished) {
+        throw new IllegalStateException("getBodyPublisher() already called");
+      }
+      if (partIterator != null) {
+        throw new IllegalStateException("getPartIterator() already called");
+      }
       inputStream = Content.Source.asInputStream(request);
       reader =
           new BufferedReader(
@@ -143,6 +221,26 @@ public class HttpRequestImpl implements HttpRequest {
     return reader;
   }
 
+  @Override
+  public Flow.Publisher<ByteBuffer> getBodyPublisher() {
+    if (inputStream != null) {
+      throw new IllegalStateException("getInputStream() or getReader() already called");
+    }
+    if (bodyPublished) {
+      throw new IllegalStateException("getBodyPublisher() already called");
+    }
+    if (partIterator != null) {
+      throw new IllegalStateException("getPartIterator() already called");
+    }
+    bodyPublished = true;
+    return new ByteBufferPublisher(Content.Source.asPublisher(request));
+  }
+
+  @Override
+  public Optional<Instant> getDeadline() {
+    return Cancellation.of(request).deadline();
+  }
+
   @Override
   public Map<String, List<String>> getHeaders() {
     return HttpUtil.toStringListMap(request.getHeaders());
@@ -151,12 +249,19 @@ public class HttpRequestImpl implements HttpRequest {
   private static class HttpPartImpl implements HttpPart {
     private final Part part;
     private final String contentType;
+    private InputStream inputStream;
+    private BufferedReader reader;
 
     private HttpPartImpl(Part part) {
       this.part = part;
       contentType = part.getHeaders().get(HttpHeader.CONTENT_TYPE);
     }
 
+    @Override
+    public String getName() {
+      return part.getName();
+    }
+
     @Override
     public Optional<String> getFileName() {
       return Optional.ofNullable(part.getFileName());
@@ -179,17 +284,44 @@ public class HttpRequestImpl implements HttpRequest {
 
     @Override
     public InputStream getInputStream() throws IOException {
-      Content.Source contentSource = part.createContentSource();
-      return Content.Source.asInputStream(contentSource);
+      if (reader != null) {
+        throw new IllegalStateException("getReader() already called");
+      }
+      if (inputStream == null) {
+        inputStream = newInputStream();
+      }
+      return inputStream;
     }
 
     @Override
     public BufferedReader getReader() throws IOException {
-      return new BufferedReader(
-          new InputStreamReader(
-              getInputStream(),
-              Objects.requireNonNullElse(
-                  MimeTypes.DEFAULTS.getCharset(contentType), StandardCharsets.UTF_8)));
+      if (reader == null) {
+        if (inputStream != null) {
+          throw new IllegalStateException("getInputStream already called");
+        }
+        inputStream = newInputStream();
+        reader =
+            new BufferedReader(
+                new InputStreamReader(
+                    inputStream,
+                    Objects.requireNonNullElse(
+                        MimeTypes.DEFAULTS.getCharset(contentType), StandardCharsets.UTF_8)));
+      }
+      return reader;
+    }
+
+    private InputStream newInputStream() throws IOException {
+      if (part instanceof MultiPart.PathPart) {
+        // A part that was too big to keep in memory was written to a file. Mapping the file lets
+        // the function read it without copying it through a buffer, but a single buffer cannot
+        // map more than 2 GiB, so a bigger file is streamed instead.
+        Path path = ((MultiPart.PathPart) part).getPath();
+        if (Files.size(path) <= Integer.MAX_VALUE) {
+          ByteBuffer mapped = BufferUtil.toMappedBuffer(path);
+          return Content.Source.asInputStream(Content.Source.from(mapped));
+        }
+      }
+      return Content.Source.asInputStream(part.createContentSource());
     }
 
     @Override
@@ -19,12 +19,17 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.io.WriteThroughWriter;
@@ -32,13 +37,21 @@ import org.eclipse.jetty.io.content.BufferedContentSink;
 import org.eclipse.jetty.io.content.ContentSinkOutputStream;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Blocker;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 
 public class HttpResponseImpl implements HttpResponse {
   private final Response response;
+  private BufferedContentSink contentSink;
   private ContentSinkOutputStream outputStream;
   private BufferedWriter writer;
+  private EventStreamImpl eventStream;
+  private CompletableFuture<Void> pendingWrite;
+  private boolean sent;
   private Charset charset;
+  // Only read once the writes are done, on the thread that made them.
+  private long contentBytes;
 
   public HttpResponseImpl(Response response) {
     this.response = response;
@@ -80,29 +93,57 @@ public class HttpResponseImpl implements HttpResponse {
     return HttpUtil.toStringListMap(response.getHeaders());
   }
 
-  @Override
-  public OutputStream getOutputStream() {
-    if (writer != null) {
-      throw new IllegalStateException("getWriter called");
+  /**
+   * Returns the sink that all response content goes through, whether it is written by the output
+   * stream, the writer, or {@link #writeAsync}. Using a single sink keeps content in order however
+   * it was written.
+   */
+  private BufferedContentSink contentSink() {
+    if (sent) {
+      throw new IllegalStateException("Response body already sent");
     }
-    if (outputStream == null) {
+    if (contentSink == null) {
       Request request = response.getRequest();
       int outputBufferSize =
           request.getConnectionMetaData().getHttpConfiguration().getOutputBufferSize();
-      BufferedContentSink bufferedContentSink =
+      contentSink =
           new BufferedContentSink(
               response,
               request.getComponents().getByteBufferPool(),
               false,
               outputBufferSize / 2,
               outputBufferSize);
+    }
+    return contentSink;
+  }
 
+  @Override
+  public OutputStream getOutputStream() {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter called");
+    }
+    if (eventStream != null) {
+      throw new IllegalStateException("getEventStream called");
+    }
+    if (outputStream == null) {
       // TODO: remove override of close() when changes from
       //    https://github.com/jetty/jetty.project/pull/13972 are released.
       outputStream =
-          new ContentSinkOutputStream(bufferedContentSink) {
+          new ContentSinkOutputStream(contentSink()) {
             boolean closed = false;
 
+            @Override
+            public void write(int b) throws IOException {
+              contentBytes++;
+              super.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              contentBytes += len;
+              super.write(b, off, len);
+            }
+
             @Override
             public void close(Callback callback) throws IOException {
               if (closed) {
@@ -123,6 +164,9 @@ public class HttpResponseImpl implements HttpResponse {
       if (outputStream != null) {
         throw new IllegalStateException("getOutputStream called");
       }
+      if (eventStream != null) {
+        throw new IllegalStateException("getEventStream called");
+      }
 
       writer =
           new NonBufferedWriter(
@@ -132,17 +176,129 @@ public class HttpResponseImpl implements HttpResponse {
     return writer;
   }
 
+  @Override
+  public synchronized void flush() throws IOException {
+    checkNoPendingWrite();
+    if (sent) {
+      // Everything has already been sent.
+      return;
+    }
+    if (writer != null) {
+      writer.flush();
+    } else {
+      // Flushing an empty sink still commits the status and headers.
+      try (Blocker.Callback callback = Blocker.callback()) {
+        contentSink().flush(callback);
+        callback.block();
+      }
+    }
+  }
+
+  @Override
+  public synchronized CompletionStage<Void> writeAsync(ByteBuffer content) {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter called");
+    }
+    checkNoPendingWrite();
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    pendingWrite = future;
+    contentBytes += content.remaining();
+    Callback callback = Callback.from(() -> future.complete(null), future::completeExceptionally);
+    BufferedContentSink sink = contentSink();
+    // Whatever is already buffered goes out along with this content, so the client sees it in the
+    // order it was written.
+    sink.write(false, content, Callback.from(() -> sink.flush(callback), callback::failed));
+    return future;
+  }
+
+  @Override
+  public synchronized void send(ByteBuffer content) throws IOException {
+    checkNothingWritten();
+    response.getHeaders().put(HttpHeader.CONTENT_LENGTH, content.remaining());
+    sent = true;
+    contentBytes += content.remaining();
+    // Writing straight to the response, rather than through the content sink, means that the
+    // buffer is not copied into a pooled buffer on the way to the network.
+    try (Blocker.Callback callback = Blocker.callback()) {
+      response.write(true, content, callback);
+      callback.block();
+    }
+  }
+
+  @Override
+  public synchronized void sendFile(Path file) throws IOException {
+    checkNothingWritten();
+    long size = Files.size(file);
+    response.getHeaders().put(HttpHeader.CONTENT_LENGTH, size);
+    sent = true;
+    contentBytes += size;
+    try (Blocker.Callback callback = Blocker.callback()) {
+      if (size <= Integer.MAX_VALUE) {
+        // The file's pages go from the page cache to the socket without a copy in the heap.
+        response.write(true, BufferUtil.toMappedBuffer(file), callback);
+      } else {
+        // Too big to map as one buffer, so stream it instead.
+        Content.copy(Content.Source.from(file), response, callback);
+      }
+      callback.block();
+    }
+  }
+
+  private void checkNothingWritten() {
+    if (sent || contentSink != null || eventStream != null) {
+      throw new IllegalStateException("Response body already started");
+    }
+  }
+
+  private void checkNoPendingWrite() {
+    if (pendingWrite != null && !pendingWrite.isDone()) {
+      throw new IllegalStateException("Previous writeAsync has not completed");
+    }
+  }
+
+  /**
+   * The number of bytes of content that have been written to this response, including any that are
+   * still buffered.
+   */
+  public long getContentBytes() {
+    return contentBytes;
+  }
+
+  @Override
+  public synchronized EventStream getEventStream() {
+    if (eventStream == null) {
+      if (sent || writer != null || outputStream != null || contentSink != null) {
+        throw new IllegalStateException("Response body already started");
+      }
+      response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/event-stream;charset=utf-8");
+      response.getHeaders().put(HttpHeader.CACHE_CONTROL, "no-cache");
+      eventStream = new EventStreamImpl(this);
+    }
+    return eventStream;
+  }
+
   /**
-   * Close the response, flushing all content.
+   * Close the response, flushing all content. If a {@link #writeAsync} is still in progress, the
+   * response is closed once it completes.
    *
    * @param callback a {@link Callback} to be completed when the response is closed.
    */
   public void close(Callback callback) {
+    CompletableFuture<Void> pending;
+    synchronized (this) {
+      pending = pendingWrite;
+    }
+    if (pending != null && !pending.isDone()) {
+      pending.whenComplete((unused, failure) -> close(callback));
+      return;
+    }
     try {
       // The writer has been constructed to do no buffering, so it does not need to be flushed
       if (outputStream != null) {
         // Do an asynchronous close, so large buffered content may be written without blocking
         outputStream.close(callback);
+      } else if (contentSink != null) {
+        contentSink.write(true, BufferUtil.EMPTY_BUFFER, callback);
       } else {
         callback.succeeded();
       }
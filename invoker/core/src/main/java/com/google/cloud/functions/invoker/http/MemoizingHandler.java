@@ -0,0 +1,146 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import com.google.cloud.functions.Memoized;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Remembers the serialized responses of a {@linkplain Memoized memoized} typed function, keyed on a
+ * hash of the raw request body, so that a request with a body that has been seen recently is
+ * answered without calling the wrapped handler at all. Only responses with status 200 are
+ * remembered. Requests whose body has no declared length, or is too large, always call the
+ * function.
+ */
+@ManagedObject("Typed function memoization")
+public class MemoizingHandler extends Handler.Wrapper {
+  /** The largest response that is remembered. */
+  static final int MAX_RESPONSE_BYTES = 1024 * 1024;
+
+  private final int maxRequestBytes;
+  private final long ttlNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // Guarded by itself.
+  private final LinkedHashMap<String, Entry> entries;
+
+  /**
+   * Creates a handler that remembers up to {@code maxEntries} responses, each for {@code ttl}, to
+   * requests whose bodies are at most {@code maxRequestBytes} long.
+   */
+  public MemoizingHandler(int maxEntries, Duration ttl, int maxRequestBytes, Handler handler) {
+    setHandler(handler);
+    this.maxRequestBytes = maxRequestBytes;
+    this.ttlNanos = ttl.toNanos();
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /** Creates a handler configured by the given annotation on the function class. */
+  public static MemoizingHandler forAnnotation(Memoized memoized, Handler handler) {
+    return new MemoizingHandler(
+        memoized.maxEntries(),
+        Duration.ofSeconds(memoized.ttlSeconds()),
+        memoized.maxRequestBytes(),
+        handler);
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    long length = request.getLength();
+    if (length < 0 || length > maxRequestBytes) {
+      return super.handle(request, response, callback);
+    }
+
+    ReplayedRequest replayed = ReplayedRequest.read(request);
+    String key = replayed.bodySha256();
+    long now = System.nanoTime();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && now - entry.expiresNanos >= 0) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+    if (entry != null) {
+      hits.increment();
+      entry.response.writeTo(response, callback);
+      return true;
+    }
+
+    misses.increment();
+    BufferingResponse buffering =
+        new BufferingResponse(replayed, response, MAX_RESPONSE_BYTES) {
+          @Override
+          void onComplete(byte[] body) {
+            if (getStatus() == HttpStatus.OK_200) {
+              Entry stored =
+                  new Entry(BufferedResponse.of(this, body, false), System.nanoTime() + ttlNanos);
+              synchronized (entries) {
+                entries.put(key, stored);
+              }
+            }
+          }
+        };
+    return super.handle(replayed, buffering, callback);
+  }
+
+  /** The number of requests answered with a remembered response. */
+  @ManagedAttribute("The number of requests answered with a remembered response")
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** The number of requests that called the function. */
+  @ManagedAttribute("The number of memoizable requests that called the function")
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** The number of remembered responses. */
+  @ManagedAttribute("The number of remembered responses")
+  public int getEntries() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static final class Entry {
+    final BufferedResponse response;
+    final long expiresNanos;
+
+    Entry(BufferedResponse response, long expiresNanos) {
+      this.response = response;
+      this.expiresNanos = expiresNanos;
+    }
+  }
+}
@@ -0,0 +1,548 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import com.google.cloud.functions.invoker.BackgroundFunctionExecutor;
+import com.google.cloud.functions.invoker.EventDeduplicationCache;
+import com.google.cloud.functions.invoker.EventOrdering;
+import com.google.cloud.functions.invoker.FunctionPool;
+import com.google.cloud.functions.invoker.HttpFunctionExecutor;
+import com.google.cloud.functions.invoker.TypedFunctionExecutor;
+import com.google.cloud.functions.invoker.gcf.JsonLogHandler;
+import com.google.cloud.functions.invoker.trace.Tracer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Measures the requests that pass through it, and answers requests for {@value #PATH} with the
+ * measurements in the Prometheus text format, without passing them on to the function.
+ *
+ * <p>The measurements are the number of requests by status, a histogram of their latency, the
+ * number in progress, and the bytes read from requests and written to responses. The server's
+ * thread pool and the number of structured log records written are reported too. Recording a
+ * request takes no locks, so measuring does not itself become a point of contention.
+ *
+ * <p>The counters of the server's other components, such as request coalescing or event ordering,
+ * are reported as well. They are found among the server's beans when the metrics are requested,
+ * and a component that is not configured reports nothing.
+ *
+ * <p>WebSocket upgrade requests are passed on without being measured, because a connection lasts as
+ * long as the session and its latency says nothing about the function.
+ */
+@ManagedObject("Function metrics")
+public class MetricsHandler extends Handler.Wrapper {
+  /** The path at which the metrics are served. */
+  public static final String PATH = "/__metrics";
+
+  /** The upper bounds of the latency buckets that are reported, in seconds. */
+  private static final double[] BUCKET_SECONDS = {
+    0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+  };
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final String labels;
+  private final ThreadPool threadPool;
+  // Indexed by status code. Codes outside the range are not counted by status.
+  private final AtomicLongArray statuses = new AtomicLongArray(600);
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+
+  /**
+   * Creates a handler that labels its measurements with the name and signature type of the
+   * function, and reports on {@code threadPool}.
+   */
+  public MetricsHandler(String function, String signatureType, ThreadPool threadPool) {
+    this.labels =
+        "function=\"" + escape(function) + "\",signature=\"" + escape(signatureType) + "\"";
+    this.threadPool = threadPool;
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    if (PATH.equals(request.getHttpURI().getCanonicalPath())) {
+      response.getHeaders().put(HttpHeader.CONTENT_TYPE, CONTENT_TYPE);
+      Content.Sink.write(response, true, metrics(), callback);
+      return true;
+    }
+    if (request.getHeaders().contains(HttpHeader.UPGRADE)) {
+      return super.handle(request, response, callback);
+    }
+
+    inFlight.incrementAndGet();
+    Invocation invocation = new Invocation(response, callback);
+    try {
+      if (super.handle(
+          new CountingRequest(request), new CountingResponse(request, response), invocation)) {
+        return true;
+      }
+    } catch (Throwable t) {
+      invocation.complete(HttpStatus.INTERNAL_SERVER_ERROR_500);
+      throw t;
+    }
+    invocation.complete(HttpStatus.NOT_FOUND_404);
+    return false;
+  }
+
+  /** Completes the measurement of a request when its callback completes. */
+  private final class Invocation extends Callback.Nested {
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final Response response;
+
+    Invocation(Response response, Callback callback) {
+      super(callback);
+      this.response = response;
+    }
+
+    @Override
+    public void succeeded() {
+      complete(response.getStatus());
+      super.succeeded();
+    }
+
+    @Override
+    public void failed(Throwable x) {
+      complete(
+          response.isCommitted() ? response.getStatus() : HttpStatus.INTERNAL_SERVER_ERROR_500);
+      super.failed(x);
+    }
+
+    void complete(int status) {
+      if (!completed.compareAndSet(false, true)) {
+        return;
+      }
+      inFlight.decrementAndGet();
+      if (status >= 100 && status < statuses.length()) {
+        statuses.incrementAndGet(status);
+      }
+      latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+  }
+
+  /** A request that counts the bytes of content read from it. */
+  private final class CountingRequest extends Request.Wrapper {
+    CountingRequest(Request request) {
+      super(request);
+    }
+
+    @Override
+    public Content.Chunk read() {
+      Content.Chunk chunk = super.read();
+      if (chunk != null) {
+        requestBytes.add(chunk.remaining());
+      }
+      return chunk;
+    }
+  }
+
+  /** A response that counts the bytes of content written to it. */
+  private final class CountingResponse extends Response.Wrapper {
+    CountingResponse(Request request, Response response) {
+      super(request, response);
+    }
+
+    @Override
+    public void write(boolean last, ByteBuffer byteBuffer, Callback callback) {
+      if (byteBuffer != null) {
+        responseBytes.add(byteBuffer.remaining());
+      }
+      super.write(last, byteBuffer, callback);
+    }
+  }
+
+  /** Returns the current measurements in the Prometheus text exposition format. */
+  String metrics() {
+    StringBuilder text = new StringBuilder(4096);
+
+    header(text, "function_requests_total", "counter", "Requests handled, by status code.");
+    for (int status = 100; status < statuses.length(); status++) {
+      long count = statuses.get(status);
+      if (count > 0) {
+        text.append("function_requests_total{")
+            .append(labels)
+            .append(",code=\"")
+            .append(status)
+            .append("\"} ")
+            .append(count)
+            .append('\n');
+      }
+    }
+
+    header(
+        text,
+        "function_request_duration_seconds",
+        "histogram",
+        "Time from receiving a request to completing its response.");
+    for (double bound : BUCKET_SECONDS) {
+      long count = latency.countAtMost((long) (bound * 1_000_000));
+      bucket(text, Double.toString(bound), count);
+    }
+    long count = latency.count();
+    bucket(text, "+Inf", count);
+    sample(text, "function_request_duration_seconds_sum", latency.sumMicros() / 1e6);
+    sample(text, "function_request_duration_seconds_count", count);
+
+    header(text, "function_requests_in_flight", "gauge", "Requests in progress.");
+    sample(text, "function_requests_in_flight", inFlight.get());
+    header(text, "function_request_bytes_total", "counter", "Bytes read from request bodies.");
+    sample(text, "function_request_bytes_total", requestBytes.sum());
+    header(text, "function_response_bytes_total", "counter", "Bytes written to response bodies.");
+    sample(text, "function_response_bytes_total", responseBytes.sum());
+
+    if (threadPool instanceof QueuedThreadPool) {
+      QueuedThreadPool pool = (QueuedThreadPool) threadPool;
+      header(text, "jetty_threads", "gauge", "Threads in the server's pool.");
+      sample(text, "jetty_threads", pool.getThreads());
+      header(text, "jetty_threads_busy", "gauge", "Threads in the pool that are running a job.");
+      sample(text, "jetty_threads_busy", pool.getBusyThreads());
+      header(text, "jetty_threads_idle", "gauge", "Threads in the pool waiting for a job.");
+      sample(text, "jetty_threads_idle", pool.getIdleThreads());
+      header(text, "jetty_threads_max", "gauge", "The maximum number of threads in the pool.");
+      sample(text, "jetty_threads_max", pool.getMaxThreads());
+      header(text, "jetty_queue_size", "gauge", "Jobs waiting for a thread.");
+      sample(text, "jetty_queue_size", pool.getQueueSize());
+    }
+
+    header(text, "function_log_records_total", "counter", "Structured log records written.");
+    sample(text, "function_log_records_total", logRecordsWritten());
+
+    Server server = getServer();
+    if (server != null) {
+      components(text, server);
+    }
+    return text.toString();
+  }
+
+  /** Adds the counters of the components among the beans of {@code server}. */
+  private void components(StringBuilder text, Server server) {
+    Collection<ConcurrencyLimitHandler> limiters =
+        server.getContainedBeans(ConcurrencyLimitHandler.class);
+    total(
+        text,
+        limiters,
+        "function_concurrency_limit",
+        "gauge",
+        "The current limit on the number of requests in progress.",
+        ConcurrencyLimitHandler::getLimit);
+    total(
+        text,
+        limiters,
+        "function_concurrency_rejected_total",
+        "counter",
+        "Requests rejected with status 429 because the concurrency limit was reached.",
+        ConcurrencyLimitHandler::getRejected);
+
+    // Each kind of function has its own executor, but they all count abandoned invocations.
+    List<Long> abandoned = new ArrayList<>();
+    for (HttpFunctionExecutor executor : server.getContainedBeans(HttpFunctionExecutor.class)) {
+      abandoned.add(executor.getAbandonedInvocations());
+    }
+    for (TypedFunctionExecutor executor : server.getContainedBeans(TypedFunctionExecutor.class)) {
+      abandoned.add(executor.getAbandonedInvocations());
+    }
+    for (BackgroundFunctionExecutor executor :
+        server.getContainedBeans(BackgroundFunctionExecutor.class)) {
+      abandoned.add(executor.getAbandonedInvocations());
+    }
+    total(
+        text,
+        abandoned,
+        "function_invocations_abandoned_total",
+        "counter",
+        "Invocations cancelled because the client disconnected.",
+        Long::longValue);
+
+    // Only invocations of a pooled function can wait for an instance.
+    List<FunctionPool<?>> pools = new ArrayList<>();
+    for (FunctionPool<?> pool : server.getContainedBeans(FunctionPool.class)) {
+      if (pool.isPooled()) {
+        pools.add(pool);
+      }
+    }
+    total(
+        text,
+        pools,
+        "function_instances",
+        "gauge",
+        "Instances in the function's pool.",
+        FunctionPool::getSize);
+    total(
+        text,
+        pools,
+        "function_instances_idle",
+        "gauge",
+        "Instances in the function's pool that are not in use.",
+        FunctionPool::getIdle);
+    total(
+        text,
+        pools,
+        "function_instance_waits_total",
+        "counter",
+        "Invocations that waited for an instance of the function.",
+        FunctionPool::getWaits);
+    if (!pools.isEmpty()) {
+      long waitMillis = 0;
+      long maxWaitMillis = 0;
+      for (FunctionPool<?> pool : pools) {
+        waitMillis += pool.getWaitMillis();
+        maxWaitMillis = Math.max(maxWaitMillis, pool.getMaxWaitMillis());
+      }
+      header(
+          text,
+          "function_instance_wait_seconds_total",
+          "counter",
+          "Total time invocations waited for an instance of the function.");
+      sample(text, "function_instance_wait_seconds_total", waitMillis / 1e3);
+      header(
+          text,
+          "function_instance_max_wait_seconds",
+          "gauge",
+          "The longest time an invocation waited for an instance of the function.");
+      sample(text, "function_instance_max_wait_seconds", maxWaitMillis / 1e3);
+    }
+
+    Collection<ResponseCacheHandler> caches = server.getContainedBeans(ResponseCacheHandler.class);
+    total(
+        text,
+        caches,
+        "function_response_cache_hits_total",
+        "counter",
+        "Requests answered from the response cache.",
+        ResponseCacheHandler::getHits);
+    total(
+        text,
+        caches,
+        "function_response_cache_misses_total",
+        "counter",
+        "Cacheable requests that called the function.",
+        ResponseCacheHandler::getMisses);
+    total(
+        text,
+        caches,
+        "function_response_cache_bytes",
+        "gauge",
+        "Estimated memory taken by the cached responses.",
+        ResponseCacheHandler::getBytes);
+    total(
+        text,
+        caches,
+        "function_response_cache_entries",
+        "gauge",
+        "Cached responses.",
+        ResponseCacheHandler::getEntries);
+
+    Collection<RequestCoalescingHandler> coalescing =
+        server.getContainedBeans(RequestCoalescingHandler.class);
+    total(
+        text,
+        coalescing,
+        "function_coalesced_requests_total",
+        "counter",
+        "Requests sent a copy of an identical request's response.",
+        RequestCoalescingHandler::getCoalesced);
+    total(
+        text,
+        coalescing,
+        "function_coalescing_fallbacks_total",
+        "counter",
+        "Waiting requests that called the function after all.",
+        RequestCoalescingHandler::getFallbacks);
+    total(
+        text,
+        coalescing,
+        "function_coalescing_waiting",
+        "gauge",
+        "Requests waiting for an identical request's response.",
+        RequestCoalescingHandler::getWaiting);
+
+    Collection<MemoizingHandler> memoizing = server.getContainedBeans(MemoizingHandler.class);
+    total(
+        text,
+        memoizing,
+        "function_memoized_hits_total",
+        "counter",
+        "Requests answered with a remembered response.",
+        MemoizingHandler::getHits);
+    total(
+        text,
+        memoizing,
+        "function_memoized_misses_total",
+        "counter",
+        "Memoizable requests that called the function.",
+        MemoizingHandler::getMisses);
+    total(
+        text,
+        memoizing,
+        "function_memoized_entries",
+        "gauge",
+        "Remembered responses.",
+        MemoizingHandler::getEntries);
+
+    Collection<EventDeduplicationCache> deduplication =
+        server.getContainedBeans(EventDeduplicationCache.class);
+    total(
+        text,
+        deduplication,
+        "function_event_duplicates_total",
+        "counter",
+        "Duplicate events whose first delivery had already been handled.",
+        EventDeduplicationCache::getHits);
+    total(
+        text,
+        deduplication,
+        "function_event_duplicates_in_flight_total",
+        "counter",
+        "Duplicate events that waited for their first delivery to be handled.",
+        EventDeduplicationCache::getInFlightHits);
+    total(
+        text,
+        deduplication,
+        "function_event_deduplication_misses_total",
+        "counter",
+        "Events for which the function was called.",
+        EventDeduplicationCache::getMisses);
+
+    Collection<EventOrdering> ordering = server.getContainedBeans(EventOrdering.class);
+    total(
+        text,
+        ordering,
+        "function_event_ordering_waiting",
+        "gauge",
+        "Events waiting for an earlier event with the same ordering key.",
+        EventOrdering::getWaiting);
+    total(
+        text,
+        ordering,
+        "function_event_ordering_rejected_total",
+        "counter",
+        "Events rejected because too many were waiting for their lane.",
+        EventOrdering::getRejected);
+
+    Collection<Tracer> tracers = server.getContainedBeans(Tracer.class);
+    total(
+        text,
+        tracers,
+        "function_spans_exported_total",
+        "counter",
+        "Trace spans exported.",
+        Tracer::getExported);
+    total(
+        text,
+        tracers,
+        "function_spans_dropped_total",
+        "counter",
+        "Trace spans dropped because the export queue was full.",
+        Tracer::getDropped);
+    total(
+        text,
+        tracers,
+        "function_spans_failed_total",
+        "counter",
+        "Trace spans that failed to export.",
+        Tracer::getFailed);
+  }
+
+  /** Adds the sum of {@code value} over {@code beans}, unless there are none. */
+  private <T> void total(
+      StringBuilder text,
+      Collection<T> beans,
+      String name,
+      String type,
+      String help,
+      ToLongFunction<? super T> value) {
+    if (beans.isEmpty()) {
+      return;
+    }
+    long sum = 0;
+    for (T bean : beans) {
+      sum += value.applyAsLong(bean);
+    }
+    header(text, name, type, help);
+    sample(text, name, sum);
+  }
+
+  private static long logRecordsWritten() {
+    long records = 0;
+    for (java.util.logging.Handler handler : Logger.getLogger("").getHandlers()) {
+      if (handler instanceof JsonLogHandler) {
+        records += ((JsonLogHandler) handler).getRecordsWritten();
+      }
+    }
+    return records;
+  }
+
+  private static void header(StringBuilder text, String name, String type, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private void bucket(StringBuilder text, String bound, long count) {
+    text.append("function_request_duration_seconds_bucket{")
+        .append(labels)
+        .append(",le=\"")
+        .append(bound)
+        .append("\"} ")
+        .append(count)
+        .append('\n');
+  }
+
+  private void sample(StringBuilder text, String name, long value) {
+    text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+
+  private void sample(StringBuilder text, String name, double value) {
+    text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+  }
+
+  private static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /** The number of requests in progress. */
+  @ManagedAttribute("The number of requests in progress")
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** The number of requests that have completed. */
+  @ManagedAttribute("The number of requests that have completed")
+  public long getRequests() {
+    return latency.count();
+  }
+}
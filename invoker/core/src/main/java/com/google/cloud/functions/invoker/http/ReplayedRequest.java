@@ -0,0 +1,69 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * A request whose body has already been read, by a handler that needed to look at it, and which
+ * gives the body to the function again.
+ */
+final class ReplayedRequest extends Request.Wrapper {
+  private final ByteBuffer body;
+  private Content.Chunk chunk;
+
+  private ReplayedRequest(Request request, ByteBuffer body) {
+    super(request);
+    this.body = body;
+    this.chunk = Content.Chunk.from(body.asReadOnlyBuffer(), true);
+  }
+
+  /**
+   * Reads the whole body of {@code request}, blocking until it has arrived, and returns a request
+   * that gives the body to the function again.
+   */
+  static ReplayedRequest read(Request request) throws IOException {
+    return new ReplayedRequest(request, Content.Source.asByteBuffer(request));
+  }
+
+  /** Returns the SHA-256 hash of the body, in hexadecimal. */
+  String bodySha256() {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(body.duplicate());
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public synchronized Content.Chunk read() {
+    Content.Chunk next = chunk;
+    chunk = Content.Chunk.EOF;
+    return next;
+  }
+
+  @Override
+  public void demand(Runnable demandCallback) {
+    demandCallback.run();
+  }
+}
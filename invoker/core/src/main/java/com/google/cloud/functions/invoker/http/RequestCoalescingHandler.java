@@ -0,0 +1,237 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Lets only one of a set of identical concurrent requests call the function. The first request
+ * with a given key, the leader, calls the wrapped handler as usual, and its response is buffered as
+ * it is written. Identical requests that arrive meanwhile, the followers, wait without holding a
+ * thread and are then sent a copy of the leader's response. This stops a burst of identical
+ * requests, for example when a popular value stops being cached, from all reaching the backend that
+ * the function calls.
+ *
+ * <p>Requests are identical if they have the same method and the same path and query, and, when
+ * bodies are coalesced, the same body. Without bodies, only {@code GET} requests are coalesced.
+ * With bodies, as for typed functions, requests of any method whose body is small enough are
+ * coalesced, keyed on a hash of the body.
+ *
+ * <p>Requests with an {@code Authorization} or {@code Cookie} header are never coalesced, since
+ * their responses may be meant only for their sender.
+ *
+ * <p>Followers are sent the leader's response even if it is an error. If the leader gets no
+ * response, for example because it timed out or its client disconnected, or if its response is too
+ * large to buffer or is private to the leader, because it sets a cookie or has {@code
+ * Cache-Control: private} or {@code no-store}, each follower calls the function itself. So does
+ * each follower if the response has a {@code Vary} header, since the varied request headers are not
+ * part of the key and a follower could otherwise get a variant meant for other headers.
+ */
+@ManagedObject("Request coalescing")
+public class RequestCoalescingHandler extends Handler.Wrapper {
+  /** The largest request body that is read to compute a key. Larger requests are not coalesced. */
+  static final int MAX_BODY_BYTES = 64 * 1024;
+
+  /** The largest response that is buffered for the followers. */
+  static final int MAX_RESPONSE_BYTES = 1024 * 1024;
+
+  private final boolean coalesceBodies;
+  private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+  private final AtomicInteger waiting = new AtomicInteger();
+
+  /**
+   * Creates a handler that coalesces identical requests to {@code handler}. If {@code
+   * coalesceBodies} is true, requests with bodies are coalesced too, keyed on their body.
+   */
+  public RequestCoalescingHandler(boolean coalesceBodies, Handler handler) {
+    setHandler(handler);
+    this.coalesceBodies = coalesceBodies;
+  }
+
+  /** The response of a leader, which its followers wait for. */
+  private static final class Flight {
+    /** Completes with the leader's response, or with null if followers must call the function. */
+    final CompletableFuture<BufferedResponse> response = new CompletableFuture<>();
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    HttpFields headers = request.getHeaders();
+    if (headers.contains(HttpHeader.AUTHORIZATION) || headers.contains(HttpHeader.COOKIE)) {
+      return super.handle(request, response, callback);
+    }
+    String key;
+    if (HttpMethod.GET.is(request.getMethod()) && request.getLength() <= 0) {
+      key = request.getMethod() + " " + request.getHttpURI().getPathQuery();
+    } else if (coalesceBodies
+        && request.getLength() > 0
+        && request.getLength() <= MAX_BODY_BYTES) {
+      ReplayedRequest replayed = ReplayedRequest.read(request);
+      key =
+          request.getMethod()
+              + " "
+              + request.getHttpURI().getPathQuery()
+              + " "
+              + replayed.bodySha256();
+      request = replayed;
+    } else {
+      return super.handle(request, response, callback);
+    }
+
+    Flight flight = new Flight();
+    Flight leading = flights.putIfAbsent(key, flight);
+    if (leading == null) {
+      return lead(key, flight, request, response, callback);
+    }
+
+    Request follower = request;
+    Cancellation cancellation = Cancellation.of(follower);
+    waiting.incrementAndGet();
+    leading.response.whenComplete(
+        (leaderResponse, failure) -> {
+          waiting.decrementAndGet();
+          if (cancellation.isCancelled()) {
+            // Timed out or abandoned while waiting, and the callback has already been failed.
+            return;
+          }
+          if (leaderResponse != null) {
+            coalesced.increment();
+            leaderResponse.writeTo(response, callback);
+          } else {
+            fallbacks.increment();
+            // This runs on the leader's thread, which should not be held up calling the function
+            // again.
+            follower.getContext().execute(() -> handleAlone(follower, response, callback));
+          }
+        });
+    return true;
+  }
+
+  private boolean lead(
+      String key, Flight flight, Request request, Response response, Callback callback)
+      throws Exception {
+    BufferingResponse buffering =
+        new BufferingResponse(request, response, MAX_RESPONSE_BYTES) {
+          @Override
+          void onComplete(byte[] body) {
+            if (!isShareable(getHeaders())) {
+              finish(key, flight, null);
+            } else {
+              finish(key, flight, BufferedResponse.of(this, body, false));
+            }
+          }
+        };
+    Callback finishing =
+        new Callback.Nested(callback) {
+          @Override
+          public void succeeded() {
+            // If the response was too large to buffer, or was completed without a last write, the
+            // flight is still in progress here.
+            finish(key, flight, null);
+            super.succeeded();
+          }
+
+          @Override
+          public void failed(Throwable x) {
+            finish(key, flight, null);
+            super.failed(x);
+          }
+        };
+    try {
+      if (super.handle(request, buffering, finishing)) {
+        return true;
+      }
+    } catch (Throwable t) {
+      finish(key, flight, null);
+      throw t;
+    }
+    finish(key, flight, null);
+    return false;
+  }
+
+  /**
+   * Whether a response may be sent to the followers. It may not if it is meant only for the client
+   * that it was sent to, or if it {@code Vary}s on request headers that are not part of the key, so
+   * that a follower could be sent a variant meant for different headers.
+   */
+  private static boolean isShareable(HttpFields headers) {
+    if (headers.contains(HttpHeader.SET_COOKIE) || headers.contains(HttpHeader.VARY)) {
+      return false;
+    }
+    for (String directive : headers.getCSV(HttpHeader.CACHE_CONTROL, false)) {
+      String name = directive.trim().toLowerCase(Locale.ROOT);
+      if (name.startsWith("private") || name.startsWith("no-store")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Ends the flight, so that later requests with the same key call the function again. */
+  private void finish(String key, Flight flight, BufferedResponse response) {
+    flights.remove(key, flight);
+    flight.response.complete(response);
+  }
+
+  private void handleAlone(Request request, Response response, Callback callback) {
+    try {
+      if (!super.handle(request, response, callback)) {
+        Response.writeError(request, response, callback, HttpStatus.NOT_FOUND_404);
+      }
+    } catch (Throwable t) {
+      callback.failed(t);
+    }
+  }
+
+  /** The number of requests that were sent a copy of an identical request's response. */
+  @ManagedAttribute("The number of requests sent a copy of an identical request's response")
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  /** The number of waiting requests that had to call the function because the leader failed. */
+  @ManagedAttribute("The number of waiting requests that called the function after all")
+  public long getFallbacks() {
+    return fallbacks.sum();
+  }
+
+  /** The number of requests waiting for an identical request's response. */
+  @ManagedAttribute("The number of requests waiting for an identical request's response")
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  /** The number of distinct requests being handled that other requests can join. */
+  @ManagedAttribute("The number of distinct requests in progress")
+  public int getInFlight() {
+    return flights.size();
+  }
+}
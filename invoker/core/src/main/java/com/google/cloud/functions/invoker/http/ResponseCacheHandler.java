@@ -0,0 +1,307 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * Caches the responses of the wrapped handler to {@code GET} requests, so that a request that the
+ * function has recently answered is answered again without calling the function.
+ *
+ * <p>Only responses that the function marks as cacheable are stored: they must have a {@code
+ * Cache-Control} header with {@code max-age} or {@code s-maxage}, and none of {@code no-store},
+ * {@code no-cache} or {@code private}. Responses that set cookies, and responses that {@code Vary}
+ * on a header that is not one of the configured vary headers, are not stored. Requests with an
+ * {@code Authorization} or {@code Cookie} header are neither answered from the cache nor stored
+ * in it, and requests with {@code Cache-Control: no-cache} always call the function.
+ *
+ * <p>Entries are keyed on the method, the path and query, and the values of the configured vary
+ * headers. They are kept in a least-recently-used map bounded by their total size in bytes, which
+ * counts the key, the headers and a fixed overhead as well as the body, so that responses with
+ * empty bodies cannot grow the map without bound. The bodies are optionally kept in direct buffers
+ * so that a large cache does not add to garbage collection work.
+ */
+@ManagedObject("HTTP response cache")
+public class ResponseCacheHandler extends Handler.Wrapper {
+  /** The statuses whose responses may be cached, as long as they have an explicit lifetime. */
+  private static final Set<Integer> CACHEABLE_STATUSES =
+      Set.of(
+          HttpStatus.OK_200,
+          HttpStatus.NON_AUTHORITATIVE_INFORMATION_203,
+          HttpStatus.NO_CONTENT_204,
+          HttpStatus.MOVED_PERMANENTLY_301,
+          HttpStatus.PERMANENT_REDIRECT_308,
+          HttpStatus.NOT_FOUND_404,
+          HttpStatus.GONE_410);
+
+  /**
+   * An estimate of the memory that an entry takes besides its key, headers and body: the map node,
+   * the entry and response objects, the header list and the body buffer.
+   */
+  private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final boolean offHeap;
+  private final List<String> varyHeaders;
+  private final Set<String> varyHeadersLowerCase;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // Everything below is guarded by this.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+
+  /**
+   * Creates a handler that caches up to {@code maxBytes} of response bodies, in direct buffers if
+   * {@code offHeap} is true. Requests that differ in any of {@code varyHeaders} are cached
+   * separately.
+   */
+  public ResponseCacheHandler(
+      long maxBytes, boolean offHeap, List<String> varyHeaders, Handler handler) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+    }
+    setHandler(handler);
+    this.maxBytes = maxBytes;
+    // A single huge response should not be able to empty the whole cache.
+    this.maxEntryBytes = Math.max(1, maxBytes / 4);
+    this.offHeap = offHeap;
+    this.varyHeaders = List.copyOf(varyHeaders);
+    this.varyHeadersLowerCase =
+        varyHeaders.stream().map(h -> h.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    // A request with credentials may get a response meant only for its user.
+    if (!HttpMethod.GET.is(request.getMethod())
+        || request.getHeaders().contains(HttpHeader.AUTHORIZATION)
+        || request.getHeaders().contains(HttpHeader.COOKIE)) {
+      return super.handle(request, response, callback);
+    }
+
+    String key = key(request);
+    long now = System.nanoTime();
+    if (!request.getHeaders().contains(HttpHeader.CACHE_CONTROL, "no-cache")) {
+      Entry entry;
+      synchronized (this) {
+        entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+          remove(key);
+          entry = null;
+        }
+      }
+      if (entry != null) {
+        hits.increment();
+        entry.writeTo(response, now, callback);
+        return true;
+      }
+    }
+
+    misses.increment();
+    return super.handle(request, new CapturingResponse(request, response, key), callback);
+  }
+
+  private String key(Request request) {
+    StringBuilder key = new StringBuilder();
+    key.append(request.getMethod()).append(' ').append(request.getHttpURI().getPathQuery());
+    for (String header : varyHeaders) {
+      key.append('\n').append(header).append(':');
+      List<String> values = request.getHeaders().getValuesList(header);
+      key.append(String.join(",", values));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the number of seconds for which a response with these headers may be reused, or -1 if
+   * it must not be stored.
+   */
+  private long freshnessSeconds(HttpFields headers) {
+    if (headers.contains(HttpHeader.SET_COOKIE)) {
+      return -1;
+    }
+    for (String vary : headers.getCSV(HttpHeader.VARY, false)) {
+      if (!varyHeadersLowerCase.contains(vary.toLowerCase(Locale.ROOT))) {
+        // Includes "*", and headers whose values are not part of the key.
+        return -1;
+      }
+    }
+    long maxAge = -1;
+    long sharedMaxAge = -1;
+    for (String directive : headers.getCSV(HttpHeader.CACHE_CONTROL, false)) {
+      String name = directive;
+      String value = null;
+      int equals = directive.indexOf('=');
+      if (equals >= 0) {
+        name = directive.substring(0, equals).trim();
+        value = directive.substring(equals + 1).trim();
+      }
+      switch (name.toLowerCase(Locale.ROOT)) {
+        case "no-store":
+        case "no-cache":
+        case "private":
+          return -1;
+        case "max-age":
+          maxAge = parseSeconds(value);
+          break;
+        case "s-maxage":
+          sharedMaxAge = parseSeconds(value);
+          break;
+        default:
+          break;
+      }
+    }
+    return sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+  }
+
+  private static long parseSeconds(String value) {
+    if (value == null) {
+      return -1;
+    }
+    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      value = value.substring(1, value.length() - 1);
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    remove(key);
+    entries.put(key, entry);
+    bytes += entry.size();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      bytes -= iterator.next().size();
+      iterator.remove();
+    }
+  }
+
+  private void remove(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) {
+      bytes -= old.size();
+    }
+  }
+
+  /** The number of requests answered from the cache. */
+  @ManagedAttribute("The number of requests answered from the cache")
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** The number of cacheable requests that were not in the cache, so the function was called. */
+  @ManagedAttribute("The number of cacheable requests that called the function")
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** The proportion of cacheable requests that were answered from the cache. */
+  @ManagedAttribute("The proportion of cacheable requests answered from the cache")
+  public double getHitRatio() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** An estimate of the memory taken by the cached responses, in bytes. */
+  @ManagedAttribute("An estimate of the memory taken by the cached responses in bytes")
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** The number of cached responses. */
+  @ManagedAttribute("The number of cached responses")
+  public synchronized int getEntries() {
+    return entries.size();
+  }
+
+  /** A stored response, and when it stops being fresh. */
+  private static final class Entry {
+    final BufferedResponse response;
+    final long storedNanos;
+    final long expiresNanos;
+    final long size;
+
+    Entry(String key, BufferedResponse response, long storedNanos, long freshSeconds) {
+      this.response = response;
+      this.storedNanos = storedNanos;
+      this.expiresNanos = storedNanos + freshSeconds * 1_000_000_000L;
+      this.size =
+          ENTRY_OVERHEAD_BYTES + 2L * key.length() + response.headersSize() + response.size();
+    }
+
+    /** An estimate of the memory the entry takes, in bytes. */
+    long size() {
+      return size;
+    }
+
+    boolean isExpired(long nowNanos) {
+      return nowNanos - expiresNanos >= 0;
+    }
+
+    void writeTo(Response response, long nowNanos, Callback callback) {
+      response.getHeaders().put(HttpHeader.AGE, (nowNanos - storedNanos) / 1_000_000_000L);
+      this.response.writeTo(response, callback);
+    }
+  }
+
+  /**
+   * A response that keeps a copy of what the function writes, as long as it may be cached, and
+   * stores it when the last of the content is written.
+   */
+  private final class CapturingResponse extends BufferingResponse {
+    private final String key;
+
+    CapturingResponse(Request request, Response wrapped, String key) {
+      super(request, wrapped, maxEntryBytes);
+      this.key = key;
+    }
+
+    /** Stores the complete response, if its status and headers allow it. */
+    @Override
+    void onComplete(byte[] body) {
+      if (!CACHEABLE_STATUSES.contains(getStatus())) {
+        return;
+      }
+      long freshSeconds = freshnessSeconds(getHeaders());
+      if (freshSeconds <= 0) {
+        return;
+      }
+      BufferedResponse response = BufferedResponse.of(this, body, offHeap);
+      put(key, new Entry(key, response, System.nanoTime(), freshSeconds));
+    }
+  }
+}
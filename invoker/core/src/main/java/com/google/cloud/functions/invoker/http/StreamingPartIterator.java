@@ -0,0 +1,313 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import com.google.cloud.functions.HttpRequest.HttpPart;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.MultiPart;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.util.Blocker;
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * Parses a multipart request as the function reads it. The request body is only read when the
+ * function asks for more: either the content of the current part, or the next part. Parts are
+ * therefore never held in memory as a whole, and content chunks are handed from the network to the
+ * function without being copied.
+ *
+ * <p>Like the rest of {@link HttpRequestImpl}, this class is not thread-safe.
+ */
+class StreamingPartIterator implements Iterator<HttpPart> {
+  private final Content.Source source;
+  private final MultiPart.Parser parser;
+
+  /** Parts whose headers have been parsed, but which have not yet been returned by next(). */
+  private final Deque<StreamingPart> parsedParts = new ArrayDeque<>();
+
+  /** The part whose content the parser is currently receiving, if any. */
+  private StreamingPart parsing;
+
+  /** The part most recently returned by next(). */
+  private StreamingPart current;
+
+  private boolean complete;
+  private Throwable failure;
+
+  StreamingPartIterator(Content.Source source, String boundary) {
+    this.source = source;
+    this.parser = new MultiPart.Parser(boundary, new Listener());
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (current != null) {
+      current.skipRemaining();
+      current = null;
+    }
+    while (parsedParts.isEmpty() && !complete) {
+      parseNextChunk();
+    }
+    return !parsedParts.isEmpty();
+  }
+
+  @Override
+  public HttpPart next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    current = parsedParts.removeFirst();
+    return current;
+  }
+
+  /** Reads the next chunk of the request body, blocking until it arrives, and parses it. */
+  private void parseNextChunk() {
+    try {
+      checkFailure();
+      Content.Chunk chunk = source.read();
+      while (chunk == null) {
+        try (Blocker.Runnable blocker = Blocker.runnable()) {
+          source.demand(blocker);
+          blocker.block();
+        }
+        chunk = source.read();
+      }
+      if (Content.Chunk.isFailure(chunk)) {
+        throw new IOException(chunk.getFailure());
+      }
+      try {
+        parser.parse(chunk);
+      } finally {
+        chunk.release();
+      }
+      checkFailure();
+      if (chunk.isLast() && !complete) {
+        throw new EOFException("Multipart request ended before its final boundary");
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Invalid multipart request", failure);
+    }
+  }
+
+  private class Listener implements MultiPart.Parser.Listener {
+    private HttpFields.Mutable headers;
+
+    @Override
+    public void onPartBegin() {
+      headers = HttpFields.build();
+    }
+
+    @Override
+    public void onPartHeader(String name, String value) {
+      headers.add(name, value);
+    }
+
+    @Override
+    public void onPartHeaders() {
+      parsing = new StreamingPart(headers.asImmutable());
+      parsedParts.addLast(parsing);
+    }
+
+    @Override
+    public void onPartContent(Content.Chunk chunk) {
+      if (!chunk.hasRemaining()) {
+        return;
+      }
+      // The chunk is a slice of the request chunk, which is released once it has been parsed, so
+      // we retain it until the function has read it.
+      if (chunk.canRetain()) {
+        chunk.retain();
+        parsing.content.addLast(chunk);
+      } else {
+        parsing.content.addLast(Content.Chunk.from(BufferUtil.copy(chunk.getByteBuffer()), false));
+      }
+    }
+
+    @Override
+    public void onPartEnd() {
+      parsing.ended = true;
+      parsing = null;
+    }
+
+    @Override
+    public void onComplete() {
+      complete = true;
+    }
+
+    @Override
+    public void onFailure(Throwable failure) {
+      StreamingPartIterator.this.failure = failure;
+    }
+  }
+
+  private class StreamingPart implements HttpPart {
+    private final HttpFields headers;
+    private final String contentType;
+    private final String name;
+    private final String fileName;
+    private final Deque<Content.Chunk> content = new ArrayDeque<>();
+    private boolean ended;
+    private InputStream inputStream;
+    private BufferedReader reader;
+
+    StreamingPart(HttpFields headers) {
+      this.headers = headers;
+      this.contentType = headers.get(HttpHeader.CONTENT_TYPE);
+      Map<String, String> parameters = new HashMap<>();
+      String disposition = headers.get(HttpHeader.CONTENT_DISPOSITION);
+      if (disposition != null) {
+        HttpField.getValueParameters(disposition, parameters);
+      }
+      this.name = parameters.get("name");
+      this.fileName = parameters.get("filename");
+    }
+
+    /** Releases any content that the function did not read, parsing until the end of the part. */
+    void skipRemaining() {
+      while (true) {
+        content.forEach(Content.Chunk::release);
+        content.clear();
+        if (ended) {
+          return;
+        }
+        parseNextChunk();
+      }
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public Optional<String> getFileName() {
+      return Optional.ofNullable(fileName);
+    }
+
+    @Override
+    public Optional<String> getContentType() {
+      return Optional.ofNullable(contentType);
+    }
+
+    @Override
+    public long getContentLength() {
+      return headers.getLongField(HttpHeader.CONTENT_LENGTH);
+    }
+
+    @Override
+    public Optional<String> getCharacterEncoding() {
+      return Optional.ofNullable(MimeTypes.getCharsetFromContentType(contentType));
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      if (reader != null) {
+        throw new IllegalStateException("getReader() already called");
+      }
+      if (inputStream == null) {
+        inputStream = new PartInputStream();
+      }
+      return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() {
+      if (reader == null) {
+        if (inputStream != null) {
+          throw new IllegalStateException("getInputStream already called");
+        }
+        inputStream = new PartInputStream();
+        reader =
+            new BufferedReader(
+                new InputStreamReader(
+                    inputStream,
+                    Objects.requireNonNullElse(
+                        MimeTypes.DEFAULTS.getCharset(contentType), StandardCharsets.UTF_8)));
+      }
+      return reader;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      return HttpUtil.toStringListMap(headers);
+    }
+
+    /** Reads the part's content, parsing more of the request whenever the content runs out. */
+    private class PartInputStream extends InputStream {
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        while (true) {
+          Content.Chunk chunk = content.peekFirst();
+          if (chunk != null) {
+            if (!chunk.hasRemaining()) {
+              content.removeFirst().release();
+              continue;
+            }
+            int n = Math.min(len, chunk.remaining());
+            chunk.getByteBuffer().get(b, off, n);
+            return n;
+          }
+          if (ended) {
+            return -1;
+          }
+          try {
+            parseNextChunk();
+          } catch (UncheckedIOException e) {
+            throw e.getCause();
+          }
+        }
+      }
+
+      @Override
+      public int available() {
+        Content.Chunk chunk = content.peekFirst();
+        return chunk == null ? 0 : chunk.remaining();
+      }
+    }
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.cloud.functions.invoker.http;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.jetty.http.BadMessageException;
 import org.eclipse.jetty.http.HttpStatus;
@@ -34,6 +35,10 @@ public class TimeoutHandler extends Handler.Wrapper {
 
   @Override
   public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    // Tell the function when it has to finish, and cancel what it is doing if it doesn't.
+    Cancellation cancellation = Cancellation.of(request);
+    cancellation.setDeadline(Instant.now().plus(timeout));
+
     // Wrap the callback to ensure it is only completed once between the
     // handler and the timeout task.
     Callback wrappedCallback = new ProtectedCallback(callback);
@@ -42,10 +47,13 @@ public class TimeoutHandler extends Handler.Wrapper {
             .getComponents()
             .getScheduler()
             .schedule(
-                () ->
-                    wrappedCallback.failed(
-                        new BadMessageException(
-                            HttpStatus.REQUEST_TIMEOUT_408, "Function execution timed out")),
+                () -> {
+                  BadMessageException timedOut =
+                      new BadMessageException(
+                          HttpStatus.REQUEST_TIMEOUT_408, "Function execution timed out");
+                  wrappedCallback.failed(timedOut);
+                  cancellation.cancel(timedOut);
+                },
                 timeout);
 
     // Cancel the timeout if the request completes the callback first.
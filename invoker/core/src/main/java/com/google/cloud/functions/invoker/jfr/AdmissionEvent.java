@@ -0,0 +1,33 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** The time that an invocation waited for an instance of the function to be free. */
+@Name("com.google.cloud.functions.Admission")
+@Label("Function Admission")
+@Description("Waiting for an instance of the function to be free")
+public final class AdmissionEvent extends InvocationEvent {
+  @Label("Pooled")
+  @Description("Whether invocations lease instances of the function rather than sharing one")
+  boolean pooled;
+
+  public void setPooled(boolean pooled) {
+    this.pooled = pooled;
+  }
+}
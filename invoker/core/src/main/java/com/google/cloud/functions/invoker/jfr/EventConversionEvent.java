@@ -0,0 +1,36 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Converting an event between the legacy and CloudEvent formats, because the function expects the
+ * other format from the one it was sent.
+ */
+@Name("com.google.cloud.functions.EventConversion")
+@Label("Event Conversion")
+@Description("Converting an event between the legacy and CloudEvent formats")
+public final class EventConversionEvent extends InvocationEvent {
+  @Label("Target Format")
+  @Description("The format converted to: cloudevent or legacy")
+  String targetFormat;
+
+  public void setTargetFormat(String targetFormat) {
+    this.targetFormat = targetFormat;
+  }
+}
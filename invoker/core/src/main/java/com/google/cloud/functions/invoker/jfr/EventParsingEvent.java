@@ -0,0 +1,43 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Parsing the request body of an event function into a CloudEvent or a legacy event. */
+@Name("com.google.cloud.functions.EventParsing")
+@Label("Event Parsing")
+@Description("Parsing a request into a CloudEvent or a legacy event")
+public final class EventParsingEvent extends InvocationEvent {
+  @Label("Format")
+  @Description("The format of the event: cloudevent or legacy")
+  String format;
+
+  @Label("Bytes")
+  @Description("The size of the body, or -1 if it was not known in advance")
+  @DataAmount
+  long bytes;
+
+  public void setFormat(String format) {
+    this.format = format;
+  }
+
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+}
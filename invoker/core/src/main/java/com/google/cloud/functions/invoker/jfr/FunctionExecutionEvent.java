@@ -0,0 +1,39 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The time spent in the user's function. For an asynchronous function this lasts until the stage
+ * that it returns completes.
+ */
+@Name("com.google.cloud.functions.FunctionExecution")
+@Label("Function Execution")
+@Description("Running the user's function")
+public final class FunctionExecutionEvent extends InvocationEvent {
+  private static final EventType TYPE = EventType.getEventType(FunctionExecutionEvent.class);
+
+  /**
+   * Whether this event is being recorded. An event that is held until a callback runs escapes the
+   * JIT compiler's analysis, so it should only be made when this is true.
+   */
+  public static boolean isRecorded() {
+    return TYPE.isEnabled();
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import com.google.cloud.functions.invoker.gcf.ExecutionIdUtil;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * A Flight Recorder event for one phase of a function invocation. Events are used in the usual way:
+ *
+ * <pre>{@code
+ * BodyReadEvent event = new BodyReadEvent();
+ * event.begin();
+ * ...
+ * event.commit(function, signatureType, request);
+ * }</pre>
+ *
+ * <p>The fields are only filled in if the event is going to be recorded, so when Flight Recorder
+ * is not running an event costs no more than its {@code begin} and the check in {@code commit},
+ * which the JIT compiler reduces to nothing once it has eliminated the event's allocation.
+ */
+@Category({"Cloud Functions", "Invocation"})
+@StackTrace(false)
+public abstract class InvocationEvent extends Event {
+  @Label("Function")
+  @Description("The name of the function class")
+  String function;
+
+  @Label("Signature Type")
+  @Description("The kind of function: http, typed, event or cloudevent")
+  String signatureType;
+
+  @Label("Execution Id")
+  @Description(
+      "The execution id that the request carries, or otherwise the server's id for the request")
+  String executionId;
+
+  /**
+   * Ends the event and records it for an invocation of {@code function} to handle {@code request},
+   * if the event is enabled and lasted long enough.
+   */
+  public final void commit(String function, String signatureType, Request request) {
+    if (shouldCommit()) {
+      this.function = function;
+      this.signatureType = signatureType;
+      String executionId = ExecutionIdUtil.getExecutionIdHeader(request);
+      this.executionId = executionId == null ? request.getId() : executionId;
+      commit();
+    }
+  }
+}
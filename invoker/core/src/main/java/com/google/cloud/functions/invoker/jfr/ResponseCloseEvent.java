@@ -0,0 +1,75 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Closing the response after the function has returned, which writes whatever content is still
+ * buffered and lasts until the last of it has been written.
+ */
+@Name("com.google.cloud.functions.ResponseClose")
+@Label("Response Close")
+@Description("Writing the rest of the response after the function has returned")
+public final class ResponseCloseEvent extends InvocationEvent {
+  private static final EventType TYPE = EventType.getEventType(ResponseCloseEvent.class);
+
+  @Label("Bytes")
+  @Description("The size of the response body, or -1 if it is not known")
+  @DataAmount
+  long bytes;
+
+  @Label("Failed")
+  @Description("Whether the rest of the response could not be written")
+  boolean failed;
+
+  /**
+   * Returns a callback that records the event when the response is closed, whether or not that
+   * succeeds, or {@code callback} itself if the event is not being recorded.
+   */
+  public static Callback timing(
+      Response response, String function, String signatureType, Callback callback) {
+    if (!TYPE.isEnabled()) {
+      return callback;
+    }
+    ResponseCloseEvent event = new ResponseCloseEvent();
+    event.begin();
+    return new Callback.Nested(callback) {
+      @Override
+      public void succeeded() {
+        record();
+        super.succeeded();
+      }
+
+      @Override
+      public void failed(Throwable x) {
+        event.failed = true;
+        record();
+        super.failed(x);
+      }
+
+      private void record() {
+        event.bytes = Response.getContentBytesWritten(response);
+        event.commit(function, signatureType, response.getRequest());
+      }
+    };
+  }
+}
@@ -0,0 +1,35 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.jfr;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Serializing the object that a typed function returned into the response. */
+@Name("com.google.cloud.functions.ResponseSerialization")
+@Label("Response Serialization")
+@Description("Serializing a typed function's result into the response")
+public final class ResponseSerializationEvent extends InvocationEvent {
+  @Label("Bytes")
+  @Description("The size of the serialized result")
+  @DataAmount
+  long bytes;
+
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+}
@@ -0,0 +1,101 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.runner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * The CPU and memory available to this process, and the server defaults that we derive from them.
+ * Both values come from the JVM's container support, which reads the cgroup CPU quota and memory
+ * limit when running in a container such as Cloud Run, and the host values otherwise.
+ */
+final class ContainerResources {
+  private static final long MIB = 1024 * 1024;
+
+  /** How much container memory we budget for each request thread, including its stack. */
+  private static final long MEMORY_PER_THREAD = 2 * MIB;
+
+  private static final int MIN_MAX_THREADS = 64;
+  private static final int MAX_MAX_THREADS = 1024;
+  private static final int DEFAULT_MIN_THREADS = 8;
+  private static final int MAX_SELECTORS = 4;
+  private static final long SMALL_INSTANCE_MEMORY = 512 * MIB;
+  private static final int SMALL_OUTPUT_BUFFER_SIZE = 16 * 1024;
+
+  private final int cpus;
+  private final long memoryBytes;
+
+  ContainerResources(int cpus, long memoryBytes) {
+    this.cpus = cpus;
+    this.memoryBytes = memoryBytes;
+  }
+
+  /** Returns the resources of the container (or host) that this JVM is running in. */
+  static ContainerResources detect() {
+    int cpus = Runtime.getRuntime().availableProcessors();
+    long memoryBytes = Runtime.getRuntime().maxMemory();
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      memoryBytes = ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+    }
+    return new ContainerResources(cpus, memoryBytes);
+  }
+
+  int cpus() {
+    return cpus;
+  }
+
+  long memoryBytes() {
+    return memoryBytes;
+  }
+
+  /**
+   * The default size of the request thread pool. Function code usually blocks while it works, so
+   * the number of threads bounds the number of concurrent requests rather than CPU usage. What
+   * limits it is memory, since each thread needs a stack and each request its own buffers.
+   */
+  int defaultMaxThreads() {
+    long threads = memoryBytes / MEMORY_PER_THREAD;
+    return (int) Math.max(MIN_MAX_THREADS, Math.min(MAX_MAX_THREADS, threads));
+  }
+
+  int defaultMinThreads(int maxThreads) {
+    return Math.min(DEFAULT_MIN_THREADS, maxThreads);
+  }
+
+  /** Accepting connections is cheap and Cloud Run reuses them, so one acceptor is enough. */
+  int defaultAcceptors() {
+    return 1;
+  }
+
+  int defaultSelectors() {
+    return Math.max(1, Math.min(MAX_SELECTORS, cpus / 2));
+  }
+
+  /**
+   * The default size of the response buffer. Small instances get a smaller buffer, so that a burst
+   * of concurrent requests does not hold a large share of their memory in response buffers.
+   * Otherwise we return {@code -1}, meaning the Jetty default.
+   */
+  int defaultOutputBufferSize() {
+    return memoryBytes <= SMALL_INSTANCE_MEMORY ? SMALL_OUTPUT_BUFFER_SIZE : -1;
+  }
+
+  @Override
+  public String toString() {
+    return "ContainerResources{cpus=" + cpus + ", memory=" + (memoryBytes / MIB) + "MiB}";
+  }
+}
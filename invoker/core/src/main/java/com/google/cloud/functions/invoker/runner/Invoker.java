@@ -19,23 +19,38 @@ import static java.util.stream.Collectors.toList;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.google.cloud.functions.AsyncHttpFunction;
 import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.Memoized;
 import com.google.cloud.functions.TypedFunction;
+import com.google.cloud.functions.WebSocketFunction;
 import com.google.cloud.functions.invoker.BackgroundFunctionExecutor;
+import com.google.cloud.functions.invoker.EventDeduplicationCache;
+import com.google.cloud.functions.invoker.EventOrdering;
 import com.google.cloud.functions.invoker.HttpFunctionExecutor;
 import com.google.cloud.functions.invoker.TypedFunctionExecutor;
+import com.google.cloud.functions.invoker.WebSocketFunctionExecutor;
 import com.google.cloud.functions.invoker.gcf.JsonLogHandler;
+import com.google.cloud.functions.invoker.http.ConcurrencyLimitHandler;
+import com.google.cloud.functions.invoker.http.MemoizingHandler;
+import com.google.cloud.functions.invoker.http.MetricsHandler;
+import com.google.cloud.functions.invoker.http.RequestCoalescingHandler;
+import com.google.cloud.functions.invoker.http.ResponseCacheHandler;
 import com.google.cloud.functions.invoker.http.TimeoutHandler;
+import com.google.cloud.functions.invoker.trace.OtlpHttpSpanExporter;
+import com.google.cloud.functions.invoker.trace.Tracer;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -46,17 +61,25 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.logging.LogManager;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.MultiPartConfig;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.EagerContentHandler;
 import org.eclipse.jetty.server.handler.ErrorHandler;
+import org.eclipse.jetty.server.handler.GracefulHandler;
+import org.eclipse.jetty.server.handler.SizeLimitHandler;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
@@ -75,9 +98,47 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
  * </ul>
  */
 public class Invoker {
+  static {
+    // This must happen before anything uses logging, which is when the LogManager is created.
+    if (System.getProperty("java.util.logging.manager") == null) {
+      System.setProperty("java.util.logging.manager", InvokerLogManager.class.getName());
+    }
+  }
+
   private static final Logger rootLogger = Logger.getLogger("");
   private static final Logger logger = Logger.getLogger(Invoker.class.getName());
 
+  /**
+   * How long to wait for requests in progress when shutting down, if {@link
+   * ServerConfig#shutdownGracePeriodMillis()} is not set. Cloud Run sends SIGKILL 10 seconds after
+   * SIGTERM, and we want to finish stopping before then.
+   */
+  private static final int DEFAULT_SHUTDOWN_GRACE_PERIOD_MILLIS = 9_000;
+
+  /**
+   * How much longer than the grace period logging may wait for the server to stop when the JVM is
+   * shutting down, to allow for closing the function and flushing the logs.
+   */
+  private static final Duration LOG_RESET_MARGIN = Duration.ofSeconds(1);
+
+  /**
+   * The concurrency limit that {@link ConcurrencyLimitHandler} starts with, before it has measured
+   * any latency.
+   */
+  private static final int INITIAL_CONCURRENCY_LIMIT = 20;
+
+  /**
+   * How long a handled event's id is remembered, if {@link
+   * ServerConfig#eventDeduplicationTtlSeconds()} is not set.
+   */
+  private static final Duration DEFAULT_EVENT_DEDUPLICATION_TTL = Duration.ofMinutes(10);
+
+  /** The number of ordering lanes, if {@link ServerConfig#eventOrderingLanes()} is not set. */
+  private static final int DEFAULT_EVENT_ORDERING_LANES = 64;
+
+  /** The handler that writes structured logs, if we installed one. */
+  private static JsonLogHandler jsonLogHandler;
+
   static {
     if (isGcf()) {
       // If we're running with Google Cloud Functions, we'll get better-looking logs
@@ -87,7 +148,8 @@ public class Invoker {
       for (java.util.logging.Handler handler : rootLogger.getHandlers()) {
         rootLogger.removeHandler(handler);
       }
-      rootLogger.addHandler(new JsonLogHandler(System.out, false));
+      jsonLogHandler = new JsonLogHandler(System.out, false);
+      rootLogger.addHandler(jsonLogHandler);
     }
   }
 
@@ -114,6 +176,185 @@ public class Invoker {
         names = "--classpath")
     private String classPath = null;
 
+    @Parameter(
+        description = "Path of a Unix domain socket on which to listen for HTTP requests.",
+        names = "--socket-path")
+    private String socketPath = null;
+
+    @Parameter(
+        description = "Listen only on the --socket-path Unix domain socket, not on the TCP port.",
+        names = "--socket-only")
+    private boolean socketOnly = false;
+
+    @Parameter(
+        description =
+            "Maximum number of threads for handling requests. The default depends on the memory"
+                + " available to the container.",
+        names = "--max-threads")
+    private Integer maxThreads = null;
+
+    @Parameter(
+        description = "Number of threads kept in the pool even when idle.",
+        names = "--min-threads")
+    private Integer minThreads = null;
+
+    @Parameter(
+        description = "Number of threads accepting new connections.",
+        names = "--acceptors")
+    private Integer acceptors = null;
+
+    @Parameter(
+        description =
+            "Number of selectors managing I/O on connections. The default depends on the number"
+                + " of CPUs available to the container.",
+        names = "--selectors")
+    private Integer selectors = null;
+
+    @Parameter(
+        description = "Milliseconds before an idle connection is closed.",
+        names = "--idle-timeout-ms")
+    private Integer idleTimeoutMillis = null;
+
+    @Parameter(
+        description = "Size in bytes of the buffer for response content.",
+        names = "--output-buffer-size")
+    private Integer outputBufferSize = null;
+
+    @Parameter(
+        description = "Maximum size in bytes of the request line and headers.",
+        names = "--request-header-size")
+    private Integer requestHeaderSize = null;
+
+    @Parameter(
+        description = "Accept HTTP/2 cleartext (h2c) connections in addition to HTTP/1.1.",
+        names = "--http2-cleartext")
+    private boolean http2Cleartext = false;
+
+    @Parameter(
+        description = "Maximum number of concurrent streams on one HTTP/2 connection.",
+        names = "--http2-max-concurrent-streams")
+    private Integer http2MaxConcurrentStreams = null;
+
+    @Parameter(
+        description = "Initial HTTP/2 flow-control window for each stream, in bytes.",
+        names = "--http2-initial-stream-recv-window")
+    private Integer http2InitialStreamRecvWindow = null;
+
+    @Parameter(
+        description = "Initial HTTP/2 flow-control window for each connection, in bytes.",
+        names = "--http2-initial-session-recv-window")
+    private Integer http2InitialSessionRecvWindow = null;
+
+    @Parameter(
+        description =
+            "Size in bytes above which a part of a multipart request is written to a temporary"
+                + " file rather than kept in memory.",
+        names = "--multipart-max-memory-part-size")
+    private Integer multipartMaxMemoryPartSize = null;
+
+    @Parameter(
+        description = "Directory for parts of multipart requests that are written to files.",
+        names = "--multipart-location")
+    private String multipartLocation = null;
+
+    @Parameter(
+        description =
+            "Parse multipart requests part by part as the function reads them, instead of before"
+                + " the function is called.",
+        names = "--multipart-streaming")
+    private boolean multipartStreaming = false;
+
+    @Parameter(
+        description =
+            "Maximum size in bytes of a request body. Larger requests are rejected with status"
+                + " 413.",
+        names = "--max-request-body-size")
+    private Long maxRequestBodySize = null;
+
+    @Parameter(
+        description =
+            "Milliseconds to wait for requests in progress to finish when the server is shutting"
+                + " down.",
+        names = "--shutdown-grace-period-ms")
+    private Integer shutdownGracePeriodMillis = null;
+
+    @Parameter(
+        description =
+            "Limit the number of concurrent requests, adapting the limit to the observed latency."
+                + " Requests over the limit are rejected with status 429.",
+        names = "--adaptive-concurrency")
+    private boolean adaptiveConcurrency = false;
+
+    @Parameter(
+        description =
+            "Highest value of the --adaptive-concurrency limit. The default is the maximum number"
+                + " of threads.",
+        names = "--max-concurrency")
+    private Integer maxConcurrency = null;
+
+    @Parameter(
+        description =
+            "Skip events whose id was handled recently, remembering up to this many event ids.",
+        names = "--event-deduplication-size")
+    private Integer eventDeduplicationSize = null;
+
+    @Parameter(
+        description = "Seconds for which a handled event's id is remembered.",
+        names = "--event-deduplication-ttl-seconds")
+    private Integer eventDeduplicationTtlSeconds = null;
+
+    @Parameter(
+        description =
+            "Cache responses to GET requests that allow it, keeping up to this many bytes.",
+        names = "--response-cache-size")
+    private Long responseCacheSize = null;
+
+    @Parameter(
+        description = "Comma-separated request headers that are part of the response cache key.",
+        names = "--response-cache-vary")
+    private String responseCacheVary = null;
+
+    @Parameter(
+        description = "Keep cached response bodies outside the Java heap.",
+        names = "--response-cache-off-heap")
+    private boolean responseCacheOffHeap = false;
+
+    @Parameter(
+        description = "Let identical concurrent requests share one invocation of the function.",
+        names = "--request-coalescing")
+    private boolean requestCoalescing = false;
+
+    @Parameter(
+        description =
+            "CloudEvent attribute or extension whose value orders events. Events with the same"
+                + " value are handled one at a time, in the order they arrive.",
+        names = "--event-ordering-key")
+    private String eventOrderingKey = null;
+
+    @Parameter(
+        description = "Number of lanes that event ordering keys are hashed to.",
+        names = "--event-ordering-lanes")
+    private Integer eventOrderingLanes = null;
+
+    @Parameter(
+        description =
+            "Number of instances of the function class, each used by one invocation at a time,"
+                + " for functions that are not thread-safe.",
+        names = "--function-instances")
+    private Integer functionInstances = null;
+
+    @Parameter(
+        description = "Measure requests and serve the measurements at " + MetricsHandler.PATH + ".",
+        names = "--metrics")
+    private boolean metrics = false;
+
+    @Parameter(
+        description =
+            "URL of an OTLP/HTTP traces endpoint, such as http://localhost:4318/v1/traces, to"
+                + " export a span for each invocation to.",
+        names = "--trace-endpoint")
+    private String traceEndpoint = null;
+
     @Parameter(names = "--help", help = true)
     private boolean help = false;
   }
@@ -163,12 +404,115 @@ public class Invoker {
             .filter(Objects::nonNull)
             .findFirst();
     ClassLoader functionClassLoader = makeClassLoader(functionClasspath);
+    ServerConfig serverConfig = serverConfig(options, environment);
     Invoker invoker =
         new Invoker(
-            port, functionTarget, environment.get("FUNCTION_SIGNATURE_TYPE"), functionClassLoader);
+            port,
+            functionTarget,
+            environment.get("FUNCTION_SIGNATURE_TYPE"),
+            functionClassLoader,
+            serverConfig);
     return Optional.of(invoker);
   }
 
+  private static ServerConfig serverConfig(Options options, Map<String, String> environment) {
+    ServerConfig.Builder builder = ServerConfig.fromEnvironment(environment);
+    if (options.socketPath != null) {
+      builder.setSocketPath(Paths.get(options.socketPath));
+    }
+    if (options.socketOnly) {
+      builder.setSocketOnly(true);
+    }
+    if (options.maxThreads != null) {
+      builder.setMaxThreads(options.maxThreads);
+    }
+    if (options.minThreads != null) {
+      builder.setMinThreads(options.minThreads);
+    }
+    if (options.acceptors != null) {
+      builder.setAcceptors(options.acceptors);
+    }
+    if (options.selectors != null) {
+      builder.setSelectors(options.selectors);
+    }
+    if (options.idleTimeoutMillis != null) {
+      builder.setIdleTimeoutMillis(options.idleTimeoutMillis);
+    }
+    if (options.outputBufferSize != null) {
+      builder.setOutputBufferSize(options.outputBufferSize);
+    }
+    if (options.requestHeaderSize != null) {
+      builder.setRequestHeaderSize(options.requestHeaderSize);
+    }
+    if (options.http2Cleartext) {
+      builder.setHttp2Cleartext(true);
+    }
+    if (options.http2MaxConcurrentStreams != null) {
+      builder.setHttp2MaxConcurrentStreams(options.http2MaxConcurrentStreams);
+    }
+    if (options.http2InitialStreamRecvWindow != null) {
+      builder.setHttp2InitialStreamRecvWindow(options.http2InitialStreamRecvWindow);
+    }
+    if (options.http2InitialSessionRecvWindow != null) {
+      builder.setHttp2InitialSessionRecvWindow(options.http2InitialSessionRecvWindow);
+    }
+    if (options.multipartMaxMemoryPartSize != null) {
+      builder.setMultipartMaxMemoryPartSize(options.multipartMaxMemoryPartSize);
+    }
+    if (options.multipartLocation != null) {
+      builder.setMultipartLocation(Paths.get(options.multipartLocation));
+    }
+    if (options.multipartStreaming) {
+      builder.setMultipartStreaming(true);
+    }
+    if (options.maxRequestBodySize != null) {
+      builder.setMaxRequestBodySize(options.maxRequestBodySize);
+    }
+    if (options.shutdownGracePeriodMillis != null) {
+      builder.setShutdownGracePeriodMillis(options.shutdownGracePeriodMillis);
+    }
+    if (options.adaptiveConcurrency) {
+      builder.setAdaptiveConcurrency(true);
+    }
+    if (options.maxConcurrency != null) {
+      builder.setMaxConcurrency(options.maxConcurrency);
+    }
+    if (options.eventDeduplicationSize != null) {
+      builder.setEventDeduplicationSize(options.eventDeduplicationSize);
+    }
+    if (options.eventDeduplicationTtlSeconds != null) {
+      builder.setEventDeduplicationTtlSeconds(options.eventDeduplicationTtlSeconds);
+    }
+    if (options.responseCacheSize != null) {
+      builder.setResponseCacheSize(options.responseCacheSize);
+    }
+    if (options.responseCacheVary != null) {
+      builder.setResponseCacheVary(options.responseCacheVary);
+    }
+    if (options.responseCacheOffHeap) {
+      builder.setResponseCacheOffHeap(true);
+    }
+    if (options.requestCoalescing) {
+      builder.setRequestCoalescing(true);
+    }
+    if (options.eventOrderingKey != null) {
+      builder.setEventOrderingKey(options.eventOrderingKey);
+    }
+    if (options.eventOrderingLanes != null) {
+      builder.setEventOrderingLanes(options.eventOrderingLanes);
+    }
+    if (options.functionInstances != null) {
+      builder.setFunctionInstances(options.functionInstances);
+    }
+    if (options.metrics) {
+      builder.setMetrics(true);
+    }
+    if (options.traceEndpoint != null) {
+      builder.setTraceEndpoint(options.traceEndpoint);
+    }
+    return builder.build();
+  }
+
   private static void usage(JCommander jCommander) {
     StringBuilder usageBuilder = new StringBuilder();
     jCommander.getUsageFormatter().usage(usageBuilder);
@@ -200,18 +544,34 @@ public class Invoker {
   private final String functionTarget;
   private final String functionSignatureType;
   private final ClassLoader functionClassLoader;
+  private final ServerConfig serverConfig;
 
-  private Server server;
+  private volatile Server server;
 
   public Invoker(
       Integer port,
       String functionTarget,
       String functionSignatureType,
       ClassLoader functionClassLoader) {
+    this(
+        port,
+        functionTarget,
+        functionSignatureType,
+        functionClassLoader,
+        ServerConfig.fromEnvironment(System.getenv()).build());
+  }
+
+  public Invoker(
+      Integer port,
+      String functionTarget,
+      String functionSignatureType,
+      ClassLoader functionClassLoader,
+      ServerConfig serverConfig) {
     this.port = port;
     this.functionTarget = functionTarget;
     this.functionSignatureType = functionSignatureType;
     this.functionClassLoader = functionClassLoader;
+    this.serverConfig = serverConfig;
   }
 
   Integer getPort() {
@@ -230,6 +590,10 @@ public class Invoker {
     return functionClassLoader;
   }
 
+  ServerConfig getServerConfig() {
+    return serverConfig;
+  }
+
   /**
    * This will start the server and wait (join) for function calls. To start the server inside a
    * unit or integration test, use {@link #startTestServer()} instead.
@@ -278,7 +642,10 @@ public class Invoker {
       throw new IllegalStateException("Server already started");
     }
 
-    QueuedThreadPool pool = new QueuedThreadPool(1024);
+    ContainerResources resources = ContainerResources.detect();
+    int maxThreads = serverConfig.maxThreads().orElse(resources.defaultMaxThreads());
+    int minThreads = serverConfig.minThreads().orElse(resources.defaultMinThreads(maxThreads));
+    QueuedThreadPool pool = new QueuedThreadPool(maxThreads, minThreads);
     server = new Server(pool);
     server.setErrorHandler(
         new ErrorHandler() {
@@ -294,62 +661,266 @@ public class Invoker {
             callback.succeeded();
           }
         });
-    ServerConnector connector = new ServerConnector(server);
-    connector.setPort(port);
-    connector.setReuseAddress(true);
-    connector.setReusePort(true);
-    server.addConnector(connector);
+
+    HttpConfiguration httpConfig = new HttpConfiguration();
+    serverConfig.requestHeaderSize().ifPresent(httpConfig::setRequestHeaderSize);
+    int outputBufferSize =
+        serverConfig.outputBufferSize().orElse(resources.defaultOutputBufferSize());
+    if (outputBufferSize > 0) {
+      httpConfig.setOutputBufferSize(outputBufferSize);
+    }
+    int acceptors = serverConfig.acceptors().orElse(resources.defaultAcceptors());
+    int selectors = serverConfig.selectors().orElse(resources.defaultSelectors());
+    if (serverConfig.socketPath().isPresent()) {
+      UnixDomainServerConnector socketConnector =
+          new UnixDomainServerConnector(
+              server, acceptors, selectors, connectionFactories(httpConfig));
+      socketConnector.setUnixDomainPath(serverConfig.socketPath().get());
+      serverConfig.idleTimeoutMillis().ifPresent(socketConnector::setIdleTimeout);
+      server.addConnector(socketConnector);
+    }
+    if (serverConfig.listensOnPort()) {
+      ServerConnector connector =
+          new ServerConnector(server, acceptors, selectors, connectionFactories(httpConfig));
+      connector.setPort(port);
+      connector.setReuseAddress(true);
+      connector.setReusePort(true);
+      serverConfig.idleTimeoutMillis().ifPresent(connector::setIdleTimeout);
+      server.addConnector(connector);
+    }
+    logger.log(
+        Level.FINE,
+        "Server threads {0}-{1}, selectors {2}, for {3}",
+        new Object[] {minThreads, maxThreads, selectors, resources});
 
     Class<?> functionClass = loadFunctionClass();
+    int instances = serverConfig.functionInstances().orElse(0);
 
     Handler handler;
     if (functionSignatureType == null) {
-      handler = handlerForDeducedSignatureType(functionClass);
+      handler = handlerForDeducedSignatureType(functionClass, instances);
     } else {
       switch (functionSignatureType) {
         case "http":
           if (TypedFunction.class.isAssignableFrom(functionClass)) {
-            handler = TypedFunctionExecutor.forClass(functionClass);
+            handler = TypedFunctionExecutor.forClass(functionClass, instances);
           } else {
-            handler = HttpFunctionExecutor.forClass(functionClass);
+            handler = HttpFunctionExecutor.forClass(functionClass, instances);
           }
           break;
         case "event":
         case "cloudevent":
-          handler = BackgroundFunctionExecutor.forClass(functionClass);
+          handler = BackgroundFunctionExecutor.forClass(functionClass, instances);
           break;
         case "typed":
-          handler = TypedFunctionExecutor.forClass(functionClass);
+          handler = TypedFunctionExecutor.forClass(functionClass, instances);
+          break;
+        case "websocket":
+          handler = WebSocketFunctionExecutor.forClass(functionClass).withUpgradeHandler(server);
           break;
         default:
           String error =
               String.format(
                   "Function signature type %s is unknown; should be \"http\", \"event\","
-                      + " or \"cloudevent\"",
+                      + " \"cloudevent\" or \"websocket\"",
                   functionSignatureType);
           throw new RuntimeException(error);
       }
     }
 
+    if (handler instanceof BackgroundFunctionExecutor
+        && serverConfig.eventDeduplicationSize().isPresent()) {
+      Duration ttl =
+          serverConfig
+              .eventDeduplicationTtlSeconds()
+              .<Duration>map(Duration::ofSeconds)
+              .orElse(DEFAULT_EVENT_DEDUPLICATION_TTL);
+      ((BackgroundFunctionExecutor) handler)
+          .withEventDeduplication(
+              new EventDeduplicationCache(serverConfig.eventDeduplicationSize().get(), ttl));
+    }
+    if (handler instanceof BackgroundFunctionExecutor
+        && serverConfig.eventOrderingKey().isPresent()) {
+      // Waiting events hold server threads, so one busy key may hold at most an eighth of them,
+      // and all keys together half, leaving the rest for events that can run.
+      ((BackgroundFunctionExecutor) handler)
+          .withEventOrdering(
+              new EventOrdering(
+                  serverConfig.eventOrderingKey().get(),
+                  serverConfig.eventOrderingLanes().orElse(DEFAULT_EVENT_ORDERING_LANES),
+                  Math.max(1, maxThreads / 8),
+                  Math.max(1, maxThreads / 2)));
+    }
+
+    // The tracer is a bean of the server rather than of the executor, so that it is stopped, and
+    // its last spans exported, only after the handlers have finished with it.
+    if (serverConfig.traceEndpoint().isPresent()) {
+      String service = System.getenv().getOrDefault("K_SERVICE", functionClass.getName());
+      Tracer tracer =
+          new Tracer(
+              new OtlpHttpSpanExporter(URI.create(serverConfig.traceEndpoint().get()), service));
+      server.addBean(tracer);
+      if (handler instanceof HttpFunctionExecutor) {
+        ((HttpFunctionExecutor) handler).withTracing(tracer);
+      } else if (handler instanceof TypedFunctionExecutor) {
+        ((TypedFunctionExecutor) handler).withTracing(tracer);
+      } else if (handler instanceof BackgroundFunctionExecutor) {
+        ((BackgroundFunctionExecutor) handler).withTracing(tracer);
+      }
+    }
+
+    // A request answered from the cache does not call the function at all, and one that is not can
+    // still share an invocation with identical requests, so the cache goes in front.
+    boolean httpFunction = handler instanceof HttpFunctionExecutor;
+    boolean typedFunction = handler instanceof TypedFunctionExecutor;
+    String signatureType =
+        httpFunction
+            ? "http"
+            : typedFunction
+                ? "typed"
+                : handler instanceof BackgroundFunctionExecutor ? "event" : "websocket";
+    if (serverConfig.requestCoalescing() && (httpFunction || typedFunction)) {
+      handler = new RequestCoalescingHandler(typedFunction, handler);
+    }
+    if (httpFunction && serverConfig.responseCacheSize().isPresent()) {
+      List<String> varyHeaders =
+          serverConfig.responseCacheVary().stream()
+              .flatMap(vary -> Arrays.stream(vary.split(",")))
+              .map(String::trim)
+              .filter(header -> !header.isEmpty())
+              .collect(toList());
+      handler =
+          new ResponseCacheHandler(
+              serverConfig.responseCacheSize().get(),
+              serverConfig.responseCacheOffHeap(),
+              varyHeaders,
+              handler);
+    }
+
+    // Likewise, a typed function's remembered response saves calling it at all.
+    Memoized memoized = functionClass.getAnnotation(Memoized.class);
+    if (typedFunction && memoized != null) {
+      handler = MemoizingHandler.forAnnotation(memoized, handler);
+    }
+
     // Possibly wrap with TimeoutHandler if CLOUD_RUN_TIMEOUT_SECONDS is set.
     handler = addTimerHandlerForRequestTimeout(handler);
     server.setHandler(handler);
 
-    // Add a handler to asynchronously parse multipart before invoking the function.
-    MultiPartConfig config = new MultiPartConfig.Builder().maxMemoryPartSize(-1).build();
-    EagerContentHandler.MultiPartContentLoaderFactory factory =
-        new EagerContentHandler.MultiPartContentLoaderFactory(config);
-    server.insertHandler(new EagerContentHandler(factory));
+    if (!serverConfig.multipartStreaming()) {
+      // Add a handler to asynchronously parse multipart before invoking the function.
+      EagerContentHandler.MultiPartContentLoaderFactory factory =
+          new EagerContentHandler.MultiPartContentLoaderFactory(multiPartConfig());
+      server.insertHandler(new EagerContentHandler(factory));
+    }
+
+    // Reject requests over the concurrency limit before doing any work on them. WebSocket
+    // connections are long-lived, so their latency says nothing about overload.
+    if (serverConfig.adaptiveConcurrency()
+        && !WebSocketFunction.class.isAssignableFrom(functionClass)) {
+      int maxConcurrency = serverConfig.maxConcurrency().orElse(maxThreads);
+      server.insertHandler(
+          new ConcurrencyLimitHandler(
+              1, Math.min(INITIAL_CONCURRENCY_LIMIT, maxConcurrency), maxConcurrency, null));
+    }
+
+    // Reject oversized requests before anything reads their bodies. A Content-Length above the
+    // limit is rejected straight away, and a body without one fails when it passes the limit.
+    if (serverConfig.maxRequestBodySize().isPresent()) {
+      server.insertHandler(new SizeLimitHandler(serverConfig.maxRequestBodySize().get(), -1));
+    }
+
+    // Measure every request, including those that the size and concurrency limits reject, and
+    // answer requests for the metrics before they reach the function.
+    if (serverConfig.metrics()) {
+      server.insertHandler(
+          new MetricsHandler(functionClass.getName(), signatureType, server.getThreadPool()));
+    }
 
     server.insertHandler(new NotFoundHandler());
 
+    // When the server is stopped, it first stops accepting connections, then waits for the requests
+    // that GracefulHandler is tracking, up to the stop timeout. Requests that arrive meanwhile on
+    // connections that are already open get a 503. Then it stops the handlers, which closes the
+    // function if it is AutoCloseable.
+    server.insertHandler(new GracefulHandler());
+    server.setStopTimeout(
+        serverConfig.shutdownGracePeriodMillis().orElse(DEFAULT_SHUTDOWN_GRACE_PERIOD_MILLIS));
+
     server.start();
     logServerInfo();
     if (join) {
+      // The hook is added first, so that a reset is only ever deferred for a hook that will end it.
+      // Even so, the wait is limited in case the hook cannot finish stopping the server.
+      Runtime.getRuntime().addShutdownHook(new Thread(this::shutDown, "invoker-shutdown"));
+      if (LogManager.getLogManager() instanceof InvokerLogManager) {
+        InvokerLogManager.deferResetUntilServerStopped(
+            Duration.ofMillis(server.getStopTimeout()).plus(LOG_RESET_MARGIN));
+      }
       server.join();
     }
   }
 
+  /**
+   * Stops the server when the JVM is shutting down, typically because Cloud Run has sent SIGTERM to
+   * scale the instance down. Requests in progress are given the grace period to finish, so that
+   * clients do not see them fail and retry. Then logs are flushed, so that nothing written by the
+   * function or while stopping is lost when the process exits.
+   *
+   * <p>The JDK's own shutdown hook resets logging, which removes the root logger's handlers, and it
+   * runs at the same time as this one. {@link InvokerLogManager} holds that reset back until we are
+   * done, and in case some other LogManager is in use we flush the structured log handler through
+   * our own reference to it rather than finding it on the root logger.
+   */
+  private void shutDown() {
+    Server server = this.server;
+    try {
+      if (server != null) {
+        logger.log(Level.FINE, "Shutting down");
+        server.stop();
+      }
+    } catch (Exception e) {
+      logger.log(Level.SEVERE, "Failed to stop server", e);
+    } finally {
+      for (java.util.logging.Handler handler : rootLogger.getHandlers()) {
+        handler.flush();
+      }
+      if (jsonLogHandler != null) {
+        jsonLogHandler.flush();
+      }
+      InvokerLogManager.serverStopped();
+    }
+  }
+
+  private MultiPartConfig multiPartConfig() {
+    MultiPartConfig.Builder builder = new MultiPartConfig.Builder();
+    if (serverConfig.multipartMaxMemoryPartSize().isPresent()) {
+      builder.maxMemoryPartSize(serverConfig.multipartMaxMemoryPartSize().get());
+      builder.location(
+          serverConfig
+              .multipartLocation()
+              .orElse(Paths.get(System.getProperty("java.io.tmpdir"))));
+    } else {
+      builder.maxMemoryPartSize(-1);
+    }
+    return builder.build();
+  }
+
+  private ConnectionFactory[] connectionFactories(HttpConfiguration httpConfig) {
+    HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+    if (!serverConfig.http2Cleartext()) {
+      return new ConnectionFactory[] {http1};
+    }
+    // With both factories on the connector, a client can either start speaking HTTP/2 directly
+    // ("prior knowledge", which is what Cloud Run does for end-to-end HTTP/2) or upgrade from
+    // HTTP/1.1. Plain HTTP/1.1 clients are unaffected.
+    HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(httpConfig);
+    serverConfig.http2MaxConcurrentStreams().ifPresent(h2c::setMaxConcurrentStreams);
+    serverConfig.http2InitialStreamRecvWindow().ifPresent(h2c::setInitialStreamRecvWindow);
+    serverConfig.http2InitialSessionRecvWindow().ifPresent(h2c::setInitialSessionRecvWindow);
+    return new ConnectionFactory[] {http1, h2c};
+  }
+
   /**
    * Stop the server.
    *
@@ -389,15 +960,19 @@ public class Invoker {
     }
   }
 
-  private Handler handlerForDeducedSignatureType(Class<?> functionClass) {
-    if (HttpFunction.class.isAssignableFrom(functionClass)) {
-      return HttpFunctionExecutor.forClass(functionClass);
+  private Handler handlerForDeducedSignatureType(Class<?> functionClass, int instances) {
+    if (HttpFunction.class.isAssignableFrom(functionClass)
+        || AsyncHttpFunction.class.isAssignableFrom(functionClass)) {
+      return HttpFunctionExecutor.forClass(functionClass, instances);
     }
     if (TypedFunction.class.isAssignableFrom(functionClass)) {
-      return TypedFunctionExecutor.forClass(functionClass);
+      return TypedFunctionExecutor.forClass(functionClass, instances);
+    }
+    if (WebSocketFunction.class.isAssignableFrom(functionClass)) {
+      return WebSocketFunctionExecutor.forClass(functionClass).withUpgradeHandler(server);
     }
     Optional<BackgroundFunctionExecutor> maybeExecutor =
-        BackgroundFunctionExecutor.maybeForClass(functionClass);
+        BackgroundFunctionExecutor.maybeForClass(functionClass, instances);
     if (maybeExecutor.isPresent()) {
       return maybeExecutor.get();
     }
@@ -466,7 +1041,12 @@ public class Invoker {
     if (!isGcf()) {
       logger.log(Level.INFO, "Serving function...");
       logger.log(Level.INFO, "Function: {0}", functionTarget);
-      logger.log(Level.INFO, "URL: http://localhost:{0,number,#}/", port);
+      if (serverConfig.listensOnPort()) {
+        logger.log(Level.INFO, "URL: http://localhost:{0,number,#}/", port);
+      }
+      serverConfig
+          .socketPath()
+          .ifPresent(path -> logger.log(Level.INFO, "Unix domain socket: {0}", path));
     }
   }
 
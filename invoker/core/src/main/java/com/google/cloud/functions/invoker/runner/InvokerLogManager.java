@@ -0,0 +1,92 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.runner;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+/**
+ * A {@link LogManager} that does not reset logging while the server is still stopping.
+ *
+ * <p>The standard {@code LogManager} has its own shutdown hook, which calls {@link #reset()} and so
+ * removes and closes the root logger's handlers. Shutdown hooks run concurrently, so without this
+ * the log records written while requests drain, and while the function is closed, could be lost.
+ * When the JVM is shutting down, {@link #reset()} here waits until {@link Invoker} has finished
+ * stopping the server, or until a time limit passes in case it never does. At any other time, for
+ * example when a function replaces the handlers with its own, it resets straight away.
+ *
+ * <p>The Invoker installs this class through the {@code java.util.logging.manager} system property
+ * unless that is already set.
+ */
+public final class InvokerLogManager extends LogManager {
+  private static final CountDownLatch stopped = new CountDownLatch(1);
+
+  // Zero until the Invoker defers the reset, so that resets are not held back otherwise.
+  private static volatile long maxWaitNanos;
+
+  public InvokerLogManager() {}
+
+  /**
+   * Makes a reset during JVM shutdown wait until {@link #serverStopped()} is called, but for no
+   * longer than {@code maxWait}. The Invoker calls this after it registers the shutdown hook that
+   * stops the server. If the server has already stopped by then, a reset does not wait at all.
+   */
+  static void deferResetUntilServerStopped(Duration maxWait) {
+    maxWaitNanos = maxWait.toNanos();
+  }
+
+  /** Lets a reset that was waiting for the server to stop go ahead. */
+  static void serverStopped() {
+    stopped.countDown();
+  }
+
+  @Override
+  public void reset() {
+    long waitNanos = maxWaitNanos;
+    if (waitNanos > 0 && isShuttingDown()) {
+      long deadline = System.nanoTime() + waitNanos;
+      boolean interrupted = false;
+      while (true) {
+        try {
+          stopped.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    super.reset();
+  }
+
+  /**
+   * Returns true if the JVM is running its shutdown hooks. A hook cannot be added then, and trying
+   * is the only documented way to find out.
+   */
+  private static boolean isShuttingDown() {
+    Thread probe = new Thread(() -> {});
+    try {
+      Runtime.getRuntime().addShutdownHook(probe);
+      Runtime.getRuntime().removeShutdownHook(probe);
+      return false;
+    } catch (IllegalStateException e) {
+      return true;
+    }
+  }
+}
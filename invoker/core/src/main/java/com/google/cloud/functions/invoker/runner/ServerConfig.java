@@ -0,0 +1,419 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.runner;
+
+import com.google.auto.value.AutoValue;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Configuration of the HTTP server run by {@link Invoker}. Every setting has a default that is
+ * appropriate for running in Cloud Run or Cloud Functions, so most functions will never need to
+ * change anything here.
+ *
+ * <p>Settings can be supplied as command-line options to the Invoker, or through environment
+ * variables. When both are present the command-line option wins. Settings that are left empty use
+ * the Jetty default.
+ */
+@AutoValue
+public abstract class ServerConfig {
+  static final String SOCKET_PATH_ENV = "FUNCTION_SOCKET_PATH";
+  static final String SOCKET_ONLY_ENV = "FUNCTION_SOCKET_ONLY";
+  static final String MAX_THREADS_ENV = "FUNCTION_MAX_THREADS";
+  static final String MIN_THREADS_ENV = "FUNCTION_MIN_THREADS";
+  static final String ACCEPTORS_ENV = "FUNCTION_ACCEPTORS";
+  static final String SELECTORS_ENV = "FUNCTION_SELECTORS";
+  static final String IDLE_TIMEOUT_ENV = "FUNCTION_IDLE_TIMEOUT_MS";
+  static final String OUTPUT_BUFFER_SIZE_ENV = "FUNCTION_OUTPUT_BUFFER_SIZE";
+  static final String REQUEST_HEADER_SIZE_ENV = "FUNCTION_REQUEST_HEADER_SIZE";
+  static final String HTTP2_CLEARTEXT_ENV = "FUNCTION_HTTP2_CLEARTEXT";
+  static final String HTTP2_MAX_CONCURRENT_STREAMS_ENV = "FUNCTION_HTTP2_MAX_CONCURRENT_STREAMS";
+  static final String HTTP2_STREAM_WINDOW_ENV = "FUNCTION_HTTP2_INITIAL_STREAM_RECV_WINDOW";
+  static final String HTTP2_SESSION_WINDOW_ENV = "FUNCTION_HTTP2_INITIAL_SESSION_RECV_WINDOW";
+  static final String MULTIPART_MEMORY_PART_SIZE_ENV = "FUNCTION_MULTIPART_MAX_MEMORY_PART_SIZE";
+  static final String MULTIPART_LOCATION_ENV = "FUNCTION_MULTIPART_LOCATION";
+  static final String MULTIPART_STREAMING_ENV = "FUNCTION_MULTIPART_STREAMING";
+  static final String MAX_REQUEST_BODY_SIZE_ENV = "FUNCTION_MAX_REQUEST_BODY_SIZE";
+  static final String SHUTDOWN_GRACE_PERIOD_ENV = "FUNCTION_SHUTDOWN_GRACE_PERIOD_MS";
+  static final String ADAPTIVE_CONCURRENCY_ENV = "FUNCTION_ADAPTIVE_CONCURRENCY";
+  static final String MAX_CONCURRENCY_ENV = "FUNCTION_MAX_CONCURRENCY";
+  static final String EVENT_DEDUPLICATION_SIZE_ENV = "FUNCTION_EVENT_DEDUPLICATION_SIZE";
+  static final String EVENT_DEDUPLICATION_TTL_ENV = "FUNCTION_EVENT_DEDUPLICATION_TTL_SECONDS";
+  static final String RESPONSE_CACHE_SIZE_ENV = "FUNCTION_RESPONSE_CACHE_SIZE";
+  static final String RESPONSE_CACHE_VARY_ENV = "FUNCTION_RESPONSE_CACHE_VARY";
+  static final String RESPONSE_CACHE_OFF_HEAP_ENV = "FUNCTION_RESPONSE_CACHE_OFF_HEAP";
+  static final String REQUEST_COALESCING_ENV = "FUNCTION_REQUEST_COALESCING";
+  static final String EVENT_ORDERING_KEY_ENV = "FUNCTION_EVENT_ORDERING_KEY";
+  static final String EVENT_ORDERING_LANES_ENV = "FUNCTION_EVENT_ORDERING_LANES";
+  static final String FUNCTION_INSTANCES_ENV = "FUNCTION_INSTANCES";
+  static final String METRICS_ENV = "FUNCTION_METRICS";
+  static final String TRACE_ENDPOINT_ENV = "FUNCTION_TRACE_ENDPOINT";
+
+  /**
+   * A path where the server listens for HTTP requests on a Unix domain socket. This is useful when
+   * a proxy running on the same host (such as a sidecar) is the only client of the function, since
+   * it avoids the TCP loopback stack.
+   */
+  public abstract Optional<Path> socketPath();
+
+  /**
+   * Whether the server listens only on the {@link #socketPath()}, rather than on both the socket
+   * and the TCP port. Has no effect if there is no socket path.
+   */
+  public abstract boolean socketOnly();
+
+  /**
+   * The maximum number of threads in the request thread pool. The default depends on the memory
+   * available to the container.
+   */
+  public abstract Optional<Integer> maxThreads();
+
+  /** The number of threads that the request thread pool keeps even when idle. */
+  public abstract Optional<Integer> minThreads();
+
+  /** The number of threads accepting new connections on the TCP port. */
+  public abstract Optional<Integer> acceptors();
+
+  /**
+   * The number of selectors that manage I/O on open connections. The default depends on the number
+   * of CPUs available to the container.
+   */
+  public abstract Optional<Integer> selectors();
+
+  /** How long, in milliseconds, an idle connection is kept open before being closed. */
+  public abstract Optional<Integer> idleTimeoutMillis();
+
+  /**
+   * The size, in bytes, of the buffer for response content. A response whose content fits in the
+   * buffer is sent with a {@code Content-Length} header rather than chunked. The default is smaller
+   * on small instances.
+   */
+  public abstract Optional<Integer> outputBufferSize();
+
+  /** The maximum size, in bytes, of the request line and headers of a request. */
+  public abstract Optional<Integer> requestHeaderSize();
+
+  /**
+   * Whether the server accepts HTTP/2 over cleartext connections (h2c), in addition to HTTP/1.1.
+   * Clients can use h2c either with prior knowledge or by upgrading an HTTP/1.1 connection.
+   */
+  public abstract boolean http2Cleartext();
+
+  /** The maximum number of concurrent HTTP/2 streams that a client may open on one connection. */
+  public abstract Optional<Integer> http2MaxConcurrentStreams();
+
+  /** The initial HTTP/2 flow-control window, in bytes, for each stream. */
+  public abstract Optional<Integer> http2InitialStreamRecvWindow();
+
+  /** The initial HTTP/2 flow-control window, in bytes, for each connection. */
+  public abstract Optional<Integer> http2InitialSessionRecvWindow();
+
+  /**
+   * The size, in bytes, above which a part of a multipart request is written to a temporary file
+   * rather than kept in memory. By default every part is kept in memory.
+   */
+  public abstract Optional<Integer> multipartMaxMemoryPartSize();
+
+  /**
+   * The directory where parts of multipart requests are written when they are larger than {@link
+   * #multipartMaxMemoryPartSize()}. The default is the system temporary directory. On Cloud Run
+   * and Cloud Functions that directory is itself held in memory, so it should be a mounted volume
+   * if the aim is to save memory.
+   */
+  public abstract Optional<Path> multipartLocation();
+
+  /**
+   * Whether multipart requests are parsed part by part as the function reads them, through {@code
+   * HttpRequest.getPartIterator()}, rather than completely before the function is called.
+   */
+  public abstract boolean multipartStreaming();
+
+  /**
+   * The maximum size, in bytes, of a request body. A request whose {@code Content-Length} is larger
+   * is rejected with status 413 before the function is called, and a request without a {@code
+   * Content-Length} fails with status 413 as soon as its body exceeds the limit. By default there
+   * is no limit.
+   */
+  public abstract Optional<Long> maxRequestBodySize();
+
+  /**
+   * How long, in milliseconds, the server waits for requests that are in progress to finish when
+   * it is shutting down. New requests are refused during that time. The default is a little under
+   * the 10 seconds that Cloud Run allows between SIGTERM and SIGKILL.
+   */
+  public abstract Optional<Integer> shutdownGracePeriodMillis();
+
+  /**
+   * Whether the number of requests that the function handles at the same time is limited by a limit
+   * that adapts to the observed latency. Requests over the limit are rejected with status 429.
+   */
+  public abstract boolean adaptiveConcurrency();
+
+  /**
+   * The highest that the {@linkplain #adaptiveConcurrency() adaptive concurrency} limit can go. The
+   * default is the maximum number of threads.
+   */
+  public abstract Optional<Integer> maxConcurrency();
+
+  /**
+   * If set, event functions skip events whose id they have handled recently, remembering up to this
+   * many ids. This is useful when events are delivered at least once, as they are by Pub/Sub and
+   * Eventarc, and handling an event twice is expensive.
+   */
+  public abstract Optional<Integer> eventDeduplicationSize();
+
+  /**
+   * How long, in seconds, a handled event's id is remembered for {@linkplain
+   * #eventDeduplicationSize() deduplication}. The default is 10 minutes.
+   */
+  public abstract Optional<Integer> eventDeduplicationTtlSeconds();
+
+  /**
+   * If set, HTTP functions' responses to {@code GET} requests are cached when their {@code
+   * Cache-Control} header allows it, keeping up to this many bytes of response bodies.
+   */
+  public abstract Optional<Long> responseCacheSize();
+
+  /**
+   * A comma-separated list of request headers whose values are part of the {@linkplain
+   * #responseCacheSize() response cache} key, such as {@code Accept-Language}.
+   */
+  public abstract Optional<String> responseCacheVary();
+
+  /** Whether cached response bodies are kept in direct buffers, outside the Java heap. */
+  public abstract boolean responseCacheOffHeap();
+
+  /**
+   * Whether identical concurrent requests to an HTTP or typed function share a single invocation,
+   * with every request getting a copy of its response.
+   */
+  public abstract boolean requestCoalescing();
+
+  /**
+   * If set, the CloudEvent attribute or extension whose value orders events: event functions handle
+   * events with the same value one at a time, in the order they arrive.
+   */
+  public abstract Optional<String> eventOrderingKey();
+
+  /**
+   * The number of lanes that {@linkplain #eventOrderingKey() ordering keys} are hashed to. Events
+   * in different lanes run concurrently.
+   */
+  public abstract Optional<Integer> eventOrderingLanes();
+
+  /**
+   * If set, the number of instances of the function class to make, each used by one invocation at a
+   * time. Otherwise the class's {@code @Pooled} annotation decides, and without that a single
+   * instance is shared by every invocation.
+   */
+  public abstract Optional<Integer> functionInstances();
+
+  /**
+   * Whether the server measures requests and serves the measurements in the Prometheus text format
+   * at {@code /__metrics}.
+   */
+  public abstract boolean metrics();
+
+  /**
+   * If set, the URL of an OpenTelemetry collector's OTLP/HTTP traces endpoint, such as {@code
+   * http://localhost:4318/v1/traces}, to which the server exports a span for each invocation.
+   */
+  public abstract Optional<String> traceEndpoint();
+
+  public abstract Builder toBuilder();
+
+  /** Whether the server listens on its TCP port, which it does unless it is socket-only. */
+  boolean listensOnPort() {
+    return socketPath().isEmpty() || !socketOnly();
+  }
+
+  /** Returns a builder where every setting has its default value. */
+  public static Builder builder() {
+    return new AutoValue_ServerConfig.Builder()
+        .setSocketOnly(false)
+        .setHttp2Cleartext(false)
+        .setMultipartStreaming(false)
+        .setAdaptiveConcurrency(false)
+        .setResponseCacheOffHeap(false)
+        .setRequestCoalescing(false)
+        .setMetrics(false);
+  }
+
+  /**
+   * Returns a builder where settings have been initialized from the given environment variables,
+   * and other settings have their default value.
+   */
+  public static Builder fromEnvironment(Map<String, String> environment) {
+    Builder builder = builder();
+    String socketPath = environment.get(SOCKET_PATH_ENV);
+    if (socketPath != null && !socketPath.isEmpty()) {
+      builder.setSocketPath(Paths.get(socketPath));
+    }
+    parseBoolean(environment, SOCKET_ONLY_ENV).ifPresent(builder::setSocketOnly);
+    parseInt(environment, MAX_THREADS_ENV).ifPresent(builder::setMaxThreads);
+    parseInt(environment, MIN_THREADS_ENV).ifPresent(builder::setMinThreads);
+    parseInt(environment, ACCEPTORS_ENV).ifPresent(builder::setAcceptors);
+    parseInt(environment, SELECTORS_ENV).ifPresent(builder::setSelectors);
+    parseInt(environment, IDLE_TIMEOUT_ENV).ifPresent(builder::setIdleTimeoutMillis);
+    parseInt(environment, OUTPUT_BUFFER_SIZE_ENV).ifPresent(builder::setOutputBufferSize);
+    parseInt(environment, REQUEST_HEADER_SIZE_ENV).ifPresent(builder::setRequestHeaderSize);
+    parseBoolean(environment, HTTP2_CLEARTEXT_ENV).ifPresent(builder::setHttp2Cleartext);
+    parseInt(environment, HTTP2_MAX_CONCURRENT_STREAMS_ENV)
+        .ifPresent(builder::setHttp2MaxConcurrentStreams);
+    parseInt(environment, HTTP2_STREAM_WINDOW_ENV)
+        .ifPresent(builder::setHttp2InitialStreamRecvWindow);
+    parseInt(environment, HTTP2_SESSION_WINDOW_ENV)
+        .ifPresent(builder::setHttp2InitialSessionRecvWindow);
+    parseInt(environment, MULTIPART_MEMORY_PART_SIZE_ENV)
+        .ifPresent(builder::setMultipartMaxMemoryPartSize);
+    String multipartLocation = environment.get(MULTIPART_LOCATION_ENV);
+    if (multipartLocation != null && !multipartLocation.isEmpty()) {
+      builder.setMultipartLocation(Paths.get(multipartLocation));
+    }
+    parseBoolean(environment, MULTIPART_STREAMING_ENV).ifPresent(builder::setMultipartStreaming);
+    parseLong(environment, MAX_REQUEST_BODY_SIZE_ENV).ifPresent(builder::setMaxRequestBodySize);
+    parseInt(environment, SHUTDOWN_GRACE_PERIOD_ENV)
+        .ifPresent(builder::setShutdownGracePeriodMillis);
+    parseBoolean(environment, ADAPTIVE_CONCURRENCY_ENV).ifPresent(builder::setAdaptiveConcurrency);
+    parseInt(environment, MAX_CONCURRENCY_ENV).ifPresent(builder::setMaxConcurrency);
+    parseInt(environment, EVENT_DEDUPLICATION_SIZE_ENV)
+        .ifPresent(builder::setEventDeduplicationSize);
+    parseInt(environment, EVENT_DEDUPLICATION_TTL_ENV)
+        .ifPresent(builder::setEventDeduplicationTtlSeconds);
+    parseLong(environment, RESPONSE_CACHE_SIZE_ENV).ifPresent(builder::setResponseCacheSize);
+    String responseCacheVary = environment.get(RESPONSE_CACHE_VARY_ENV);
+    if (responseCacheVary != null && !responseCacheVary.isEmpty()) {
+      builder.setResponseCacheVary(responseCacheVary);
+    }
+    parseBoolean(environment, RESPONSE_CACHE_OFF_HEAP_ENV)
+        .ifPresent(builder::setResponseCacheOffHeap);
+    parseBoolean(environment, REQUEST_COALESCING_ENV).ifPresent(builder::setRequestCoalescing);
+    String eventOrderingKey = environment.get(EVENT_ORDERING_KEY_ENV);
+    if (eventOrderingKey != null && !eventOrderingKey.isEmpty()) {
+      builder.setEventOrderingKey(eventOrderingKey);
+    }
+    parseInt(environment, EVENT_ORDERING_LANES_ENV).ifPresent(builder::setEventOrderingLanes);
+    parseInt(environment, FUNCTION_INSTANCES_ENV).ifPresent(builder::setFunctionInstances);
+    parseBoolean(environment, METRICS_ENV).ifPresent(builder::setMetrics);
+    String traceEndpoint = environment.get(TRACE_ENDPOINT_ENV);
+    if (traceEndpoint != null && !traceEndpoint.isEmpty()) {
+      builder.setTraceEndpoint(traceEndpoint);
+    }
+    return builder;
+  }
+
+  private static Optional<Boolean> parseBoolean(Map<String, String> environment, String name) {
+    String value = environment.get(name);
+    if (value == null || value.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(Boolean.parseBoolean(value));
+  }
+
+  private static Optional<Integer> parseInt(Map<String, String> environment, String name) {
+    String value = environment.get(name);
+    if (value == null || value.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Integer.parseInt(value));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Environment variable " + name + " should be an integer: " + value, e);
+    }
+  }
+
+  private static Optional<Long> parseLong(Map<String, String> environment, String name) {
+    String value = environment.get(name);
+    if (value == null || value.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Long.parseLong(value));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Environment variable " + name + " should be an integer: " + value, e);
+    }
+  }
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setSocketPath(Path x);
+
+    public abstract Builder setSocketOnly(boolean x);
+
+    public abstract Builder setMaxThreads(Integer x);
+
+    public abstract Builder setMinThreads(Integer x);
+
+    public abstract Builder setAcceptors(Integer x);
+
+    public abstract Builder setSelectors(Integer x);
+
+    public abstract Builder setIdleTimeoutMillis(Integer x);
+
+    public abstract Builder setOutputBufferSize(Integer x);
+
+    public abstract Builder setRequestHeaderSize(Integer x);
+
+    public abstract Builder setHttp2Cleartext(boolean x);
+
+    public abstract Builder setHttp2MaxConcurrentStreams(Integer x);
+
+    public abstract Builder setHttp2InitialStreamRecvWindow(Integer x);
+
+    public abstract Builder setHttp2InitialSessionRecvWindow(Integer x);
+
+    public abstract Builder setMultipartMaxMemoryPartSize(Integer x);
+
+    public abstract Builder setMultipartLocation(Path x);
+
+    public abstract Builder setMultipartStreaming(boolean x);
+
+    public abstract Builder setMaxRequestBodySize(Long x);
+
+    public abstract Builder setShutdownGracePeriodMillis(Integer x);
+
+    public abstract Builder setAdaptiveConcurrency(boolean x);
+
+    public abstract Builder setMaxConcurrency(Integer x);
+
+    public abstract Builder setEventDeduplicationSize(Integer x);
+
+    public abstract Builder setEventDeduplicationTtlSeconds(Integer x);
+
+    public abstract Builder setResponseCacheSize(Long x);
+
+    public abstract Builder setResponseCacheVary(String x);
+
+    public abstract Builder setResponseCacheOffHeap(boolean x);
+
+    public abstract Builder setRequestCoalescing(boolean x);
+
+    public abstract Builder setEventOrderingKey(String x);
+
+    public abstract Builder setEventOrderingLanes(Integer x);
+
+    public abstract Builder setFunctionInstances(Integer x);
+
+    public abstract Builder setMetrics(boolean x);
+
+    public abstract Builder setTraceEndpoint(String x);
+
+    public abstract ServerConfig build();
+  }
+}
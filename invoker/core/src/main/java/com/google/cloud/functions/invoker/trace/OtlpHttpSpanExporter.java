@@ -0,0 +1,128 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports spans to an OpenTelemetry collector with OTLP over HTTP, using the JSON encoding. The
+ * endpoint is the full URL of the collector's traces endpoint, which for a collector running
+ * alongside the function is typically {@code http://localhost:4318/v1/traces}.
+ */
+public final class OtlpHttpSpanExporter implements SpanExporter {
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final String SCOPE_NAME = "com.google.cloud.functions.invoker";
+  private static final int STATUS_CODE_ERROR = 2;
+
+  private final URI endpoint;
+  private final String serviceName;
+  private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+  /** Creates an exporter that sends spans to {@code endpoint}, labelled with {@code service}. */
+  public OtlpHttpSpanExporter(URI endpoint, String service) {
+    this.endpoint = endpoint;
+    this.serviceName = service;
+  }
+
+  @Override
+  public void export(List<Span> spans) throws IOException, InterruptedException {
+    HttpRequest request =
+        HttpRequest.newBuilder(endpoint)
+            .timeout(TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(toJson(spans).toString()))
+            .build();
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() / 100 != 2) {
+      throw new IOException("Collector at " + endpoint + " returned " + response.statusCode());
+    }
+  }
+
+  /** Returns an {@code ExportTraceServiceRequest} with the given spans, in its JSON encoding. */
+  JsonObject toJson(List<Span> spans) {
+    JsonArray spansJson = new JsonArray();
+    for (Span span : spans) {
+      spansJson.add(spanJson(span));
+    }
+    JsonObject scope = new JsonObject();
+    scope.addProperty("name", SCOPE_NAME);
+    JsonObject scopeSpans = new JsonObject();
+    scopeSpans.add("scope", scope);
+    scopeSpans.add("spans", spansJson);
+    JsonArray scopeSpansArray = new JsonArray();
+    scopeSpansArray.add(scopeSpans);
+
+    JsonObject resource = new JsonObject();
+    resource.add("attributes", attributes(Map.of("service.name", serviceName)));
+    JsonObject resourceSpans = new JsonObject();
+    resourceSpans.add("resource", resource);
+    resourceSpans.add("scopeSpans", scopeSpansArray);
+    JsonArray resourceSpansArray = new JsonArray();
+    resourceSpansArray.add(resourceSpans);
+
+    JsonObject json = new JsonObject();
+    json.add("resourceSpans", resourceSpansArray);
+    return json;
+  }
+
+  private static JsonObject spanJson(Span span) {
+    JsonObject json = new JsonObject();
+    // OTLP's JSON encoding has ids in hex rather than base64, and 64-bit integers as strings.
+    json.addProperty("traceId", span.getTraceId());
+    json.addProperty("spanId", span.getSpanId());
+    if (span.getParentSpanId() != null) {
+      json.addProperty("parentSpanId", span.getParentSpanId());
+    }
+    json.addProperty("name", span.getName());
+    json.addProperty("kind", span.getKind());
+    json.addProperty("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+    json.addProperty("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+    json.add("attributes", attributes(span.getAttributes()));
+    String error = span.getError();
+    if (error != null) {
+      JsonObject status = new JsonObject();
+      status.addProperty("code", STATUS_CODE_ERROR);
+      status.addProperty("message", error);
+      json.add("status", status);
+    }
+    return json;
+  }
+
+  private static JsonArray attributes(Map<String, ?> attributes) {
+    JsonArray json = new JsonArray();
+    for (Map.Entry<String, ?> attribute : attributes.entrySet()) {
+      JsonObject value = new JsonObject();
+      if (attribute.getValue() instanceof Long) {
+        value.addProperty("intValue", attribute.getValue().toString());
+      } else {
+        value.addProperty("stringValue", attribute.getValue().toString());
+      }
+      JsonObject keyValue = new JsonObject();
+      keyValue.addProperty("key", attribute.getKey());
+      keyValue.add("value", value);
+      json.add(keyValue);
+    }
+    return json;
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation within a trace, such as the handling of a request or one phase of it. A span is
+ * exported when it {@linkplain #end ends}. Spans that are not being recorded, because tracing is
+ * off or the caller did not sample the trace, are {@link #NOOP}, whose methods do nothing, so that
+ * code can create and end spans without checking.
+ *
+ * <p>A span is started on one thread, but may be ended on another when the work completes
+ * asynchronously.
+ */
+public final class Span implements AutoCloseable {
+  /** The OTLP kind of a span for work done inside the server. */
+  public static final int KIND_INTERNAL = 1;
+
+  /** The OTLP kind of a span for the handling of a request. */
+  public static final int KIND_SERVER = 2;
+
+  /** A span that records nothing. */
+  public static final Span NOOP = new Span(null, "", "", "", null, KIND_INTERNAL);
+
+  private final Tracer tracer;
+  private final String name;
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final int kind;
+  private final long startEpochNanos;
+  private final long startNanoTime;
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+  // Everything below is guarded by this.
+  private long endEpochNanos;
+  private boolean ended;
+  private String error;
+
+  Span(Tracer tracer, String name, String traceId, String spanId, String parentSpanId, int kind) {
+    this.tracer = tracer;
+    this.name = name;
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.kind = kind;
+    if (tracer == null) {
+      this.startEpochNanos = 0;
+      this.startNanoTime = 0;
+    } else {
+      Instant now = Instant.now();
+      this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+      this.startNanoTime = System.nanoTime();
+    }
+  }
+
+  /** Starts a span for part of the work of this one. */
+  public Span child(String name) {
+    if (tracer == null) {
+      return NOOP;
+    }
+    return new Span(tracer, name, traceId, TraceContext.randomSpanId(), spanId, KIND_INTERNAL);
+  }
+
+  /** Records a string attribute of the span. */
+  public synchronized Span setAttribute(String key, String value) {
+    if (tracer != null && !ended && value != null) {
+      attributes.put(key, value);
+    }
+    return this;
+  }
+
+  /** Records an integer attribute of the span. */
+  public synchronized Span setAttribute(String key, long value) {
+    if (tracer != null && !ended) {
+      attributes.put(key, value);
+    }
+    return this;
+  }
+
+  /** Marks the span as failed, with the given description of the failure. */
+  public synchronized Span setError(String description) {
+    if (tracer != null && !ended) {
+      error = description;
+    }
+    return this;
+  }
+
+  /** Marks the span as failed because of {@code failure}. */
+  public Span setError(Throwable failure) {
+    return setError(failure.toString());
+  }
+
+  /**
+   * Ends the span for a request that completed with the given HTTP status, or that failed with
+   * {@code failure} if that is not null. A status of 500 or more marks the span as failed.
+   */
+  public void end(int status, Throwable failure) {
+    setAttribute("http.response.status_code", status);
+    if (failure != null) {
+      setError(failure);
+    } else if (status >= 500) {
+      setError("HTTP status " + status);
+    }
+    end();
+  }
+
+  /** Ends the span, and queues it for export. Ending a span more than once has no effect. */
+  public void end() {
+    if (tracer == null) {
+      return;
+    }
+    synchronized (this) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+    }
+    tracer.ended(this);
+  }
+
+  /** Ends the span, so that it can be used in a try-with-resources statement. */
+  @Override
+  public void close() {
+    end();
+  }
+
+  /** Whether this span is being recorded, which is to say it is not {@link #NOOP}. */
+  public boolean isRecording() {
+    return tracer != null;
+  }
+
+  /** The name of the operation. */
+  public String getName() {
+    return name;
+  }
+
+  /** The 32 lowercase hex digits of the trace id. */
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /** The 16 lowercase hex digits of the span id. */
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /** The id of the span that this span is part of, or null if it is the first in this server. */
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  /** The kind, either {@link #KIND_SERVER} or {@link #KIND_INTERNAL}. */
+  public int getKind() {
+    return kind;
+  }
+
+  /** When the span started, in nanoseconds since the epoch. */
+  public long getStartEpochNanos() {
+    return startEpochNanos;
+  }
+
+  /** When the span ended, in nanoseconds since the epoch, or 0 if it has not ended. */
+  public synchronized long getEndEpochNanos() {
+    return endEpochNanos;
+  }
+
+  /** The attributes, whose values are strings or longs. */
+  public synchronized Map<String, Object> getAttributes() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+  }
+
+  /** A description of why the span failed, or null if it did not. */
+  public synchronized String getError() {
+    return error;
+  }
+}
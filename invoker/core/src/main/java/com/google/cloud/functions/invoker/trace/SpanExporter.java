@@ -0,0 +1,33 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import java.util.List;
+
+/**
+ * Sends ended spans somewhere they can be seen, such as a collector. A {@link Tracer} calls {@link
+ * #export} from a single thread, with batches of spans.
+ */
+public interface SpanExporter {
+  /**
+   * Exports a batch of ended spans.
+   *
+   * @throws Exception if the spans could not be exported. They are counted as failed and dropped.
+   */
+  void export(List<Span> spans) throws Exception;
+
+  /** Releases any resources, after the last batch has been exported. */
+  default void shutdown() {}
+}
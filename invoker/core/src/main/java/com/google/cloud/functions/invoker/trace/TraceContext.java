@@ -0,0 +1,171 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import org.eclipse.jetty.http.HttpFields;
+
+/**
+ * The trace that a request belongs to, as propagated by its caller in a W3C {@code traceparent}
+ * header or a Google Cloud {@code X-Cloud-Trace-Context} header.
+ */
+public final class TraceContext {
+  static final String TRACEPARENT_HEADER = "traceparent";
+  static final String CLOUD_TRACE_CONTEXT_HEADER = "X-Cloud-Trace-Context";
+
+  private final String traceId;
+  private final String spanId;
+  private final boolean sampled;
+
+  TraceContext(String traceId, String spanId, boolean sampled) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.sampled = sampled;
+  }
+
+  /**
+   * Returns the trace context in the given request headers, or null if they have none or it is
+   * malformed. A {@code traceparent} header takes precedence over {@code X-Cloud-Trace-Context}.
+   */
+  public static TraceContext fromHeaders(HttpFields headers) {
+    TraceContext context = parseTraceparent(headers.get(TRACEPARENT_HEADER));
+    if (context == null) {
+      context = parseCloudTraceContext(headers.get(CLOUD_TRACE_CONTEXT_HEADER));
+    }
+    return context;
+  }
+
+  /**
+   * Parses a W3C trace context header, such as {@code
+   * 00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01}.
+   */
+  static TraceContext parseTraceparent(String header) {
+    if (header == null) {
+      return null;
+    }
+    header = header.trim();
+    // Later versions may append fields, but must keep these ones where they are.
+    if (header.length() < 55 || (header.length() > 55 && header.charAt(55) != '-')) {
+      return null;
+    }
+    if (header.charAt(2) != '-' || header.charAt(35) != '-' || header.charAt(52) != '-') {
+      return null;
+    }
+    String version = header.substring(0, 2);
+    String traceId = header.substring(3, 35);
+    String spanId = header.substring(36, 52);
+    String flags = header.substring(53, 55);
+    if (!isHex(version)
+        || version.equals("ff")
+        || (version.equals("00") && header.length() != 55)
+        || !isValidId(traceId)
+        || !isValidId(spanId)
+        || !isHex(flags)) {
+      return null;
+    }
+    boolean sampled = (Integer.parseInt(flags, 16) & 1) != 0;
+    return new TraceContext(traceId, spanId, sampled);
+  }
+
+  /**
+   * Parses a Google Cloud trace context header, such as {@code
+   * 105445aa7843bc8bf206b12000100000/1;o=1}, where the span id is decimal and is optional, as is
+   * the option that says whether the trace is sampled.
+   */
+  static TraceContext parseCloudTraceContext(String header) {
+    if (header == null) {
+      return null;
+    }
+    header = header.trim();
+    String options = "";
+    int semicolon = header.indexOf(';');
+    if (semicolon >= 0) {
+      options = header.substring(semicolon + 1).trim();
+      header = header.substring(0, semicolon);
+    }
+    String traceId = header;
+    String spanId = null;
+    int slash = header.indexOf('/');
+    if (slash >= 0) {
+      traceId = header.substring(0, slash);
+      try {
+        long id = Long.parseUnsignedLong(header.substring(slash + 1));
+        spanId = id == 0 ? null : hex(id);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    traceId = traceId.toLowerCase(Locale.ROOT);
+    if (!isValidId(traceId) || traceId.length() != 32) {
+      return null;
+    }
+    return new TraceContext(traceId, spanId, options.equals("o=1"));
+  }
+
+  /** The 32 lowercase hex digits of the trace id. */
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /** The 16 lowercase hex digits of the caller's span id, or null if the caller gave none. */
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /** Whether the caller is recording this trace. */
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  static String randomTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long high;
+    long low;
+    do {
+      high = random.nextLong();
+      low = random.nextLong();
+    } while (high == 0 && low == 0);
+    return hex(high) + hex(low);
+  }
+
+  static String randomSpanId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    return hex(id);
+  }
+
+  /** Returns the 16 hex digits of {@code value}, with leading zeros. */
+  static String hex(long value) {
+    String digits = Long.toHexString(value);
+    return "0000000000000000".substring(digits.length()) + digits;
+  }
+
+  private static boolean isValidId(String id) {
+    return isHex(id) && id.chars().anyMatch(c -> c != '0');
+  }
+
+  private static boolean isHex(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false;
+      }
+    }
+    return !s.isEmpty();
+  }
+}
@@ -0,0 +1,167 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+/**
+ * Starts spans for requests, continuing the caller's trace if there is one, and exports them in
+ * batches from a background thread, so that the threads handling requests never wait for the
+ * exporter. If spans end faster than they can be exported, the excess is dropped rather than
+ * queued without limit.
+ *
+ * <p>A request whose caller propagated a trace that it is not sampling is not traced. A request
+ * without a trace context starts a new, sampled trace.
+ */
+@ManagedObject("Trace export")
+public final class Tracer extends AbstractLifeCycle {
+  private static final Logger logger = Logger.getLogger("com.google.cloud.functions.invoker");
+
+  /** The most spans that can be waiting for export. */
+  static final int MAX_QUEUED_SPANS = 2048;
+
+  /** The most spans that are exported together. */
+  static final int MAX_BATCH_SPANS = 512;
+
+  /** How long an ended span waits for more to export with it. */
+  private static final long EXPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final SpanExporter exporter;
+  private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(MAX_QUEUED_SPANS);
+  private final LongAdder exported = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private volatile boolean running;
+  private Thread exportThread;
+
+  public Tracer(SpanExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  /**
+   * Starts the span for a request with the given headers, or returns {@link Span#NOOP} if the
+   * request is not to be traced.
+   */
+  public Span startServerSpan(String name, HttpFields headers) {
+    TraceContext parent = TraceContext.fromHeaders(headers);
+    if (parent == null) {
+      String traceId = TraceContext.randomTraceId();
+      return new Span(this, name, traceId, TraceContext.randomSpanId(), null, Span.KIND_SERVER);
+    }
+    if (!parent.isSampled()) {
+      return Span.NOOP;
+    }
+    return new Span(
+        this,
+        name,
+        parent.getTraceId(),
+        TraceContext.randomSpanId(),
+        parent.getSpanId(),
+        Span.KIND_SERVER);
+  }
+
+  /** Queues an ended span for export. */
+  void ended(Span span) {
+    if (!running || !queue.offer(span)) {
+      dropped.increment();
+    }
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    running = true;
+    exportThread = new Thread(this::exportLoop, "invoker-trace-export");
+    exportThread.setDaemon(true);
+    exportThread.start();
+    super.doStart();
+  }
+
+  /** Exports the spans that are still queued, and then shuts down the exporter. */
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    running = false;
+    exportThread.join();
+    exporter.shutdown();
+  }
+
+  private void exportLoop() {
+    List<Span> batch = new ArrayList<>(MAX_BATCH_SPANS);
+    long deadline = System.nanoTime() + EXPORT_INTERVAL_NANOS;
+    while (running) {
+      long wait = deadline - System.nanoTime();
+      try {
+        Span span = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+        if (span != null) {
+          batch.add(span);
+          queue.drainTo(batch, MAX_BATCH_SPANS - batch.size());
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+      if (batch.size() >= MAX_BATCH_SPANS || System.nanoTime() - deadline >= 0) {
+        export(batch);
+        deadline = System.nanoTime() + EXPORT_INTERVAL_NANOS;
+      }
+    }
+    do {
+      queue.drainTo(batch, MAX_BATCH_SPANS - batch.size());
+      export(batch);
+    } while (!queue.isEmpty());
+  }
+
+  private void export(List<Span> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      exporter.export(List.copyOf(batch));
+      exported.add(batch.size());
+    } catch (Exception e) {
+      failed.add(batch.size());
+      logger.log(Level.FINE, "Failed to export " + batch.size() + " spans", e);
+    }
+    batch.clear();
+  }
+
+  /** The number of spans that have been exported. */
+  @ManagedAttribute("The number of spans exported")
+  public long getExported() {
+    return exported.sum();
+  }
+
+  /** The number of spans that were dropped because too many were waiting for export. */
+  @ManagedAttribute("The number of spans dropped because the export queue was full")
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /** The number of spans that the exporter failed to export. */
+  @ManagedAttribute("The number of spans that failed to export")
+  public long getFailed() {
+    return failed.sum();
+  }
+}
@@ -0,0 +1,164 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EventDeduplicationCacheTest {
+  @Test
+  public void duplicateIsSkipped() throws Exception {
+    EventDeduplicationCache cache = new EventDeduplicationCache(100, Duration.ofMinutes(10));
+    AtomicInteger calls = new AtomicInteger();
+    cache.runOnce("event-1", calls::incrementAndGet);
+    cache.runOnce("event-1", calls::incrementAndGet);
+    cache.runOnce("event-2", calls::incrementAndGet);
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(2);
+  }
+
+  @Test
+  public void failedEventIsForgotten() throws Exception {
+    EventDeduplicationCache cache = new EventDeduplicationCache(100, Duration.ofMinutes(10));
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            cache.runOnce(
+                "event-1",
+                () -> {
+                  throw new IllegalStateException("failed");
+                }));
+    AtomicInteger calls = new AtomicInteger();
+    cache.runOnce("event-1", calls::incrementAndGet);
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void expiredEventIsHandledAgain() throws Exception {
+    EventDeduplicationCache cache = new EventDeduplicationCache(100, Duration.ofMillis(10));
+    AtomicInteger calls = new AtomicInteger();
+    cache.runOnce("event-1", calls::incrementAndGet);
+    Thread.sleep(50);
+    cache.runOnce("event-1", calls::incrementAndGet);
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void duplicateWaitsForFirstDelivery() throws Exception {
+    EventDeduplicationCache cache = new EventDeduplicationCache(100, Duration.ofMinutes(10));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Void> first =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                cache.runOnce(
+                    "event-1",
+                    () -> {
+                      calls.incrementAndGet();
+                      started.countDown();
+                      finish.await();
+                    });
+              } catch (Exception e) {
+                throw new AssertionError(e);
+              }
+            });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<Void> duplicate =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                cache.runOnce("event-1", calls::incrementAndGet);
+              } catch (Exception e) {
+                throw new AssertionError(e);
+              }
+            });
+    Thread.sleep(50);
+    assertThat(duplicate.isDone()).isFalse();
+    finish.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    duplicate.get(5, TimeUnit.SECONDS);
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(cache.getInFlightHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void oldestEventsAreEvicted() throws Exception {
+    // 16 stripes of one entry each.
+    EventDeduplicationCache cache = new EventDeduplicationCache(16, Duration.ofMinutes(10));
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      cache.runOnce("event-" + i, calls::incrementAndGet);
+    }
+    cache.runOnce("event-0", calls::incrementAndGet);
+    assertThat(calls.get()).isEqualTo(1001);
+  }
+
+  @Test
+  public void eventsInProgressAreNotEvicted() throws Exception {
+    // 16 stripes of one entry each, so the other events overfill the stripe of the first.
+    EventDeduplicationCache cache = new EventDeduplicationCache(16, Duration.ofMinutes(10));
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<Void> first =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                cache.runOnce(
+                    "event-0",
+                    () -> {
+                      calls.incrementAndGet();
+                      started.countDown();
+                      finish.await();
+                    });
+              } catch (Exception e) {
+                throw new AssertionError(e);
+              }
+            });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    for (int i = 1; i < 1000; i++) {
+      cache.runOnce("event-" + i, calls::incrementAndGet);
+    }
+    CompletableFuture<Void> duplicate =
+        CompletableFuture.runAsync(
+            () -> {
+              try {
+                cache.runOnce("event-0", calls::incrementAndGet);
+              } catch (Exception e) {
+                throw new AssertionError(e);
+              }
+            });
+    Thread.sleep(50);
+    assertThat(duplicate.isDone()).isFalse();
+    finish.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    duplicate.get(5, TimeUnit.SECONDS);
+    assertThat(calls.get()).isEqualTo(1000);
+    assertThat(cache.getInFlightHits()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.http.HttpException;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EventOrderingTest {
+  private static CloudEvent event(String subject) {
+    CloudEventBuilder builder =
+        CloudEventBuilder.v1()
+            .withId("1")
+            .withSource(URI.create("//example.com/source"))
+            .withType("com.example.event")
+            .withExtension("orderingkey", "key-" + subject);
+    if (subject != null) {
+      builder.withSubject(subject);
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void keyFromAttributeOrExtension() {
+    assertThat(new EventOrdering("subject", 4, 1, 1).keyOf(event("a"))).isEqualTo("a");
+    assertThat(new EventOrdering("orderingkey", 4, 1, 1).keyOf(event("a"))).isEqualTo("key-a");
+    assertThat(new EventOrdering("subject", 4, 1, 1).keyOf(event(null))).isNull();
+    assertThat(new EventOrdering("nosuchthing", 4, 1, 1).keyOf(event("a"))).isNull();
+  }
+
+  @Test
+  public void sameKeyRunsSerially() throws Exception {
+    EventOrdering ordering = new EventOrdering("subject", 16, 4, 4);
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      Future<?> first =
+          pool.submit(
+              () -> {
+                ordering.runInOrder(
+                    "a",
+                    () -> {
+                      firstStarted.countDown();
+                      releaseFirst.await();
+                      order.add(1);
+                    });
+                return null;
+              });
+      assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+      Future<?> second =
+          pool.submit(
+              () -> {
+                ordering.runInOrder("a", () -> order.add(2));
+                return null;
+              });
+      // A different key is not held up by the first event.
+      Future<?> other =
+          pool.submit(
+              () -> {
+                ordering.runInOrder("b", () -> order.add(3));
+                return null;
+              });
+      other.get(5, TimeUnit.SECONDS);
+      while (ordering.getWaiting() == 0) {
+        Thread.sleep(5);
+      }
+      assertThat(second.isDone()).isFalse();
+      releaseFirst.countDown();
+      first.get(5, TimeUnit.SECONDS);
+      second.get(5, TimeUnit.SECONDS);
+      assertThat(order).containsExactly(3, 1, 2).inOrder();
+    } finally {
+      releaseFirst.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void excessWaitersAreRejected() throws Exception {
+    // More events for one key than there are threads in the pool. Only two may wait, so the rest
+    // are rejected at once rather than holding every thread until the first event finishes.
+    int threads = 4;
+    int events = 3 * threads;
+    EventOrdering ordering = new EventOrdering("subject", 16, 2, 8);
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      Future<?> first =
+          pool.submit(
+              () -> {
+                ordering.runInOrder(
+                    "a",
+                    () -> {
+                      firstStarted.countDown();
+                      releaseFirst.await();
+                    });
+                return null;
+              });
+      assertThat(firstStarted.await(5, TimeUnit.SECONDS)).isTrue();
+      List<Future<?>> rest = new ArrayList<>();
+      for (int i = 1; i < events; i++) {
+        rest.add(
+            pool.submit(
+                () -> {
+                  ordering.runInOrder("a", () -> {});
+                  return null;
+                }));
+      }
+      // The waiters hold two threads and the first event one, so the rejections all get through
+      // the remaining thread.
+      while (ordering.getRejected() < events - 3) {
+        Thread.sleep(5);
+      }
+      assertThat(ordering.getWaiting()).isEqualTo(2);
+      // Another key is not held up by the busy one.
+      pool.submit(
+              () -> {
+                ordering.runInOrder("b", () -> {});
+                return null;
+              })
+          .get(5, TimeUnit.SECONDS);
+
+      releaseFirst.countDown();
+      first.get(5, TimeUnit.SECONDS);
+      int completed = 0;
+      int rejected = 0;
+      for (Future<?> future : rest) {
+        try {
+          future.get(5, TimeUnit.SECONDS);
+          completed++;
+        } catch (ExecutionException e) {
+          assertThat(e).hasCauseThat().isInstanceOf(HttpException.RuntimeException.class);
+          assertThat(((HttpException) e.getCause()).getCode())
+              .isEqualTo(HttpStatus.TOO_MANY_REQUESTS_429);
+          rejected++;
+        }
+      }
+      assertThat(completed).isEqualTo(2);
+      assertThat(rejected).isEqualTo(events - 3);
+      assertThat(ordering.getWaiting()).isEqualTo(0);
+    } finally {
+      releaseFirst.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void totalWaitersAreBounded() throws Exception {
+    EventOrdering ordering = new EventOrdering("subject", 2, 4, 1);
+    // "a" and "b" hash to different lanes, so both run and neither waits.
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      CountDownLatch started = new CountDownLatch(2);
+      for (String key : new String[] {"a", "b"}) {
+        pool.submit(
+            () -> {
+              ordering.runInOrder(
+                  key,
+                  () -> {
+                    started.countDown();
+                    release.await();
+                  });
+              return null;
+            });
+      }
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      Future<?> waiter =
+          pool.submit(
+              () -> {
+                ordering.runInOrder("a", () -> {});
+                return null;
+              });
+      while (ordering.getWaiting() == 0) {
+        Thread.sleep(5);
+      }
+      HttpException.RuntimeException e =
+          assertThrows(
+              HttpException.RuntimeException.class, () -> ordering.runInOrder("b", () -> {}));
+      assertThat(e.getCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS_429);
+      release.countDown();
+      waiter.get(5, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      pool.shutdownNow();
+    }
+  }
+}
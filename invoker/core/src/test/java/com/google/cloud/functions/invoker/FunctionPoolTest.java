@@ -0,0 +1,141 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.functions.AsyncHttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.google.cloud.functions.Pooled;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FunctionPoolTest {
+  private static class Unannotated {}
+
+  @Pooled(size = 3)
+  private static class Sized {}
+
+  @Pooled
+  private static class PerProcessor {}
+
+  /** An async function that breaks its contract by returning no stage. */
+  public static class NullStage implements AsyncHttpFunction {
+    @Override
+    public CompletionStage<Void> service(HttpRequest request, HttpResponse response) {
+      return null;
+    }
+  }
+
+  @Test
+  public void poolSize() {
+    assertThat(FunctionPool.poolSize(Unannotated.class, 0)).isEqualTo(0);
+    assertThat(FunctionPool.poolSize(Unannotated.class, 5)).isEqualTo(5);
+    assertThat(FunctionPool.poolSize(Sized.class, 0)).isEqualTo(3);
+    assertThat(FunctionPool.poolSize(Sized.class, 5)).isEqualTo(5);
+    assertThat(FunctionPool.poolSize(PerProcessor.class, 0))
+        .isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void sharedInstance() throws Exception {
+    AtomicInteger made = new AtomicInteger();
+    FunctionPool<Integer> pool = FunctionPool.create(0, made::incrementAndGet);
+    assertThat(pool.isPooled()).isFalse();
+    assertThat(pool.lease()).isEqualTo(1);
+    assertThat(pool.lease()).isEqualTo(1);
+    assertThat(made.get()).isEqualTo(1);
+    assertThat(pool.getLeases()).isEqualTo(2);
+    assertThat(pool.getWaits()).isEqualTo(0);
+  }
+
+  @Test
+  public void leasedInstancesAreNotShared() throws Exception {
+    AtomicInteger made = new AtomicInteger();
+    FunctionPool<Integer> pool = FunctionPool.create(2, made::incrementAndGet);
+    assertThat(pool.instances()).containsExactly(1, 2);
+    Integer first = pool.lease();
+    Integer second = pool.lease();
+    assertThat(first).isNotEqualTo(second);
+    assertThat(pool.getIdle()).isEqualTo(0);
+    pool.release(first);
+    assertThat(pool.lease()).isEqualTo(first);
+  }
+
+  @Test
+  public void waitsForReleasedInstance() throws Exception {
+    FunctionPool<Object> pool = FunctionPool.create(1, Object::new);
+    Object leased = pool.lease();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      Future<Object> waiting =
+          executor.submit(
+              () -> {
+                started.countDown();
+                return pool.lease();
+              });
+      started.await();
+      Thread.sleep(50);
+      assertThat(waiting.isDone()).isFalse();
+      pool.release(leased);
+      assertThat(waiting.get(10, TimeUnit.SECONDS)).isSameInstanceAs(leased);
+      assertThat(pool.getWaits()).isEqualTo(1);
+      assertThat(pool.getMaxWaitMillis()).isAtLeast(1L);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void asyncFunctionReturningNullReleasesInstance() throws Exception {
+    Server server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(HttpFunctionExecutor.forClass(NullStage.class, 1));
+    server.start();
+    try {
+      HttpClient client = HttpClient.newHttpClient();
+      java.net.http.HttpRequest request =
+          java.net.http.HttpRequest.newBuilder(
+                  URI.create("http://localhost:" + connector.getLocalPort() + "/"))
+              .timeout(Duration.ofSeconds(10))
+              .build();
+      // With a single instance, a second call would wait forever if the first had not released it.
+      for (int i = 0; i < 2; i++) {
+        assertThat(client.send(request, BodyHandlers.discarding()).statusCode()).isEqualTo(500);
+      }
+    } finally {
+      server.stop();
+    }
+  }
+}
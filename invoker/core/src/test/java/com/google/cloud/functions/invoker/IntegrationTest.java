@@ -302,6 +302,19 @@ public class IntegrationTest {
         ImmutableMap.of("CLOUD_RUN_TIMEOUT_SECONDS", "1"));
   }
 
+  @Test
+  public void deadline() throws Exception {
+    testFunction(
+        SignatureType.HTTP,
+        fullTarget("Deadline"),
+        ImmutableList.of(),
+        ImmutableList.of(TestCase.builder().setExpectedResponseText("5\n").build()),
+        ImmutableMap.of("CLOUD_RUN_TIMEOUT_SECONDS", "5"));
+    testHttpFunction(
+        fullTarget("Deadline"),
+        ImmutableList.of(TestCase.builder().setExpectedResponseText("none\n").build()));
+  }
+
   @Test
   public void bufferedWrites() throws Exception {
     // This test checks that writes are buffered, and are written
@@ -402,6 +415,19 @@ public class IntegrationTest {
                 .build()));
   }
 
+  @Test
+  public void asyncEcho() throws Exception {
+    String testText = "hello\nworld\n".repeat(10_000);
+    testHttpFunction(
+        fullTarget("AsyncEcho"),
+        ImmutableList.of(
+            TestCase.builder()
+                .setRequestText(testText)
+                .setExpectedResponseText(testText)
+                .setExpectedContentType("text/plain")
+                .build()));
+  }
+
   @Test
   public void echoUrl() throws Exception {
     String[] testUrls = {"/", "/foo/bar", "/?foo=bar&baz=buh", "/foo?bar=baz"};
@@ -456,6 +482,37 @@ public class IntegrationTest {
         fullTarget("Log"), ImmutableList.of(simpleTestCase, quotingTestCase, exceptionTestCase));
   }
 
+  @Test
+  public void stackDriverLoggingWithTraceContext() throws Exception {
+    String traceId = "0af7651916cd43dd8448eb211c80319c";
+    String expectedOutput =
+        "\"execution_id\": \""
+            + EXECUTION_ID
+            + "\", "
+            + "\"logging.googleapis.com/trace\": \"projects/test-project/traces/"
+            + traceId
+            + "\", \"logging.googleapis.com/spanId\": \"b7ad6b7169203331\", "
+            + "\"logging.googleapis.com/trace_sampled\": true, "
+            + "\"message\": \"blim\"}";
+    TestCase testCase =
+        TestCase.builder()
+            .setUrl("/?message=blim")
+            .setHttpHeaders(
+                ImmutableMap.of(
+                    EXECUTION_ID_HTTP_HEADER,
+                    EXECUTION_ID,
+                    "traceparent",
+                    "00-" + traceId + "-b7ad6b7169203331-01"))
+            .setExpectedOutput(expectedOutput)
+            .build();
+    testFunction(
+        SignatureType.HTTP,
+        fullTarget("Log"),
+        ImmutableList.of(),
+        ImmutableList.of(testCase),
+        ImmutableMap.of("LOG_TRACE_CONTEXT", "true", "GOOGLE_CLOUD_PROJECT", "test-project"));
+  }
+
   private static int getJavaVersion() {
     String version = System.getProperty("java.version");
     if (version.startsWith("1.")) {
@@ -517,6 +574,28 @@ public class IntegrationTest {
         Collections.emptyMap());
   }
 
+  @Test
+  public void typedMemoized() throws Exception {
+    testFunction(
+        SignatureType.TYPED,
+        fullTarget("MemoizedTyped"),
+        ImmutableList.of(),
+        ImmutableList.of(
+            TestCase.builder()
+                .setRequestText("{\"name\":\"a\"}")
+                .setExpectedResponseText("{\"name\":\"a\",\"call\":1}")
+                .build(),
+            TestCase.builder()
+                .setRequestText("{\"name\":\"a\"}")
+                .setExpectedResponseText("{\"name\":\"a\",\"call\":1}")
+                .build(),
+            TestCase.builder()
+                .setRequestText("{\"name\":\"b\"}")
+                .setExpectedResponseText("{\"name\":\"b\",\"call\":2}")
+                .build()),
+        Collections.emptyMap());
+  }
+
   @Test
   public void typedCustomFormat() throws Exception {
     testFunction(
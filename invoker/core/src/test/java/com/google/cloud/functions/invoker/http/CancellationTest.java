@@ -0,0 +1,98 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CancellationTest {
+  @Test
+  public void cancelInterruptsRunningTask() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread canceller =
+        new Thread(
+            () -> {
+              try {
+                started.await();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+              cancellation.cancel(new Exception("client went away"));
+            });
+    canceller.start();
+    cancellation.runInterruptibly(
+        () -> {
+          started.countDown();
+          try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+          } catch (InterruptedException e) {
+            interrupted.set(true);
+            // Leave the interrupt status set, as careless code might.
+            Thread.currentThread().interrupt();
+          }
+        });
+    canceller.join();
+    assertThat(interrupted.get()).isTrue();
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    assertThat(cancellation.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void cancelRunsListenersOnce() {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger runs = new AtomicInteger();
+    cancellation.onCancel(runs::incrementAndGet);
+    assertThat(cancellation.cancel(new Exception("timeout"))).isTrue();
+    assertThat(cancellation.cancel(new Exception("client went away"))).isFalse();
+    assertThat(runs.get()).isEqualTo(1);
+
+    // A listener added after cancelling runs straight away.
+    cancellation.onCancel(runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void taskAfterCancelStartsInterrupted() throws Exception {
+    Cancellation cancellation = new Cancellation();
+    cancellation.cancel(new Exception("timeout"));
+    AtomicBoolean interrupted = new AtomicBoolean();
+    cancellation.runInterruptibly(() -> interrupted.set(Thread.currentThread().isInterrupted()));
+    assertThat(interrupted.get()).isTrue();
+    assertThat(Thread.currentThread().isInterrupted()).isFalse();
+  }
+
+  @Test
+  public void finishedInvocationIsNotCancelled() {
+    Cancellation cancellation = new Cancellation();
+    AtomicInteger runs = new AtomicInteger();
+    cancellation.onCancel(runs::incrementAndGet);
+    cancellation.finish();
+    // For example, the client disconnects while the response is being written.
+    assertThat(cancellation.cancel(new Exception("client went away"))).isFalse();
+    cancellation.onCancel(runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(0);
+    assertThat(cancellation.isCancelled()).isFalse();
+  }
+}
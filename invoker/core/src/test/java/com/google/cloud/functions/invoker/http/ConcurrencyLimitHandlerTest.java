@@ -0,0 +1,69 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.functions.invoker.http.ConcurrencyLimitHandler.GradientLimit;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConcurrencyLimitHandlerTest {
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void growsWhileLatencyIsSteady() {
+    GradientLimit limit = new GradientLimit(1, 20, 100);
+    for (int i = 0; i < 2000; i++) {
+      limit.sample(FAST, limit.get());
+    }
+    assertThat(limit.get()).isGreaterThan(40);
+    assertThat(limit.get()).isAtMost(100);
+  }
+
+  @Test
+  public void shrinksWhenLatencyRises() {
+    GradientLimit limit = new GradientLimit(1, 20, 100);
+    for (int i = 0; i < 100; i++) {
+      limit.sample(FAST, limit.get());
+    }
+    int before = limit.get();
+    for (int i = 0; i < 500; i++) {
+      limit.sample(SLOW, limit.get());
+    }
+    assertThat(limit.get()).isLessThan(before);
+    assertThat(limit.get()).isLessThan(10);
+    assertThat(limit.get()).isAtLeast(1);
+  }
+
+  @Test
+  public void doesNotGrowWithoutTraffic() {
+    GradientLimit limit = new GradientLimit(1, 20, 100);
+    for (int i = 0; i < 2000; i++) {
+      limit.sample(FAST, 1);
+    }
+    assertThat(limit.get()).isEqualTo(20);
+  }
+
+  @Test
+  public void initialLimitIsClamped() {
+    assertThat(new GradientLimit(1, 20, 8).get()).isEqualTo(8);
+    assertThat(new GradientLimit(5, 2, 8).get()).isEqualTo(5);
+  }
+}
@@ -28,7 +28,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -91,13 +95,22 @@ public class HttpTest {
     private final Server server;
 
     SimpleServer(Handler handler) throws Exception {
+      this(handler, new MultiPartConfig.Builder().maxMemoryPartSize(-1).build());
+    }
+
+    /**
+     * Starts a server where multipart requests are parsed with the given configuration before the
+     * handler is called, or where they are streamed to the handler if the configuration is null.
+     */
+    SimpleServer(Handler handler, MultiPartConfig config) throws Exception {
       this.server = new Server(serverPort);
       server.setHandler(handler);
 
-      MultiPartConfig config = new MultiPartConfig.Builder().maxMemoryPartSize(-1).build();
-      EagerContentHandler.MultiPartContentLoaderFactory factory =
-          new EagerContentHandler.MultiPartContentLoaderFactory(config);
-      server.insertHandler(new EagerContentHandler(factory));
+      if (config != null) {
+        EagerContentHandler.MultiPartContentLoaderFactory factory =
+            new EagerContentHandler.MultiPartContentLoaderFactory(config);
+        server.insertHandler(new EagerContentHandler(factory));
+      }
 
       server.start();
     }
@@ -236,19 +249,7 @@ public class HttpTest {
     }
   }
 
-  private void validateReader(BufferedReader reader) {
-    String text = reader.lines().collect(Collectors.joining("\n", "", "\n"));
-    assertThat(text).isEqualTo(TEST_BODY);
-  }
-
-  @Test
-  public void multiPartRequest() throws Exception {
-    AtomicReference<HttpRequestTest> testReference = new AtomicReference<>();
-    AtomicReference<Throwable> exceptionReference = new AtomicReference<>();
-    HttpRequestHandler testHandler = new HttpRequestHandler(testReference, exceptionReference);
-    HttpClient httpClient = new HttpClient();
-    httpClient.start();
-    String uri = "http://localhost:" + serverPort + "/";
+  private static MultiPartRequestContent multiPartContent(byte[] binary) {
     MultiPartRequestContent multiPart = new MultiPartRequestContent();
     HttpFields textHttpFields = HttpFields.build().add("foo", "bar");
     multiPart.addPart(
@@ -261,13 +262,117 @@ public class HttpTest {
             "binary",
             "/tmp/binary.x",
             bytesHttpFields,
-            new ByteBufferRequestContent(ByteBuffer.wrap(RANDOM_BYTES))));
+            new ByteBufferRequestContent(ByteBuffer.wrap(binary))));
     multiPart.close();
+    return multiPart;
+  }
+
+  @Test
+  public void streamingMultiPartRequest() throws Exception {
+    // Big enough that the binary part arrives in several chunks.
+    byte[] binary = new byte[256 * RANDOM_BYTES.length];
+    for (int i = 0; i < 256; i++) {
+      System.arraycopy(RANDOM_BYTES, 0, binary, i * RANDOM_BYTES.length, RANDOM_BYTES.length);
+    }
+    HttpRequestTest test =
+        request -> {
+          Iterator<HttpPart> parts = request.getPartIterator();
+          assertThat(parts.hasNext()).isTrue();
+          HttpPart textPart = parts.next();
+          assertThat(textPart.getName()).isEqualTo("text");
+          assertThat(textPart.getFileName()).isEmpty();
+          assertThat(textPart.getFirstHeader("foo")).hasValue("bar");
+          // Only read the first line, so the rest of the part has to be skipped.
+          assertThat(textPart.getReader().readLine()).isEqualTo(TEST_BODY.split("\n")[0]);
+          assertThat(parts.hasNext()).isTrue();
+          HttpPart bytesPart = parts.next();
+          assertThat(bytesPart.getName()).isEqualTo("binary");
+          assertThat(bytesPart.getFileName()).hasValue("/tmp/binary.x");
+          assertThat(bytesPart.getHeaders().get("foo")).containsExactly("baz", "buh");
+          try (InputStream inputStream = bytesPart.getInputStream()) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(binary);
+          }
+          assertThat(parts.hasNext()).isFalse();
+          try {
+            request.getInputStream();
+            fail("Expected IllegalStateException");
+          } catch (IllegalStateException expected) {
+          }
+        };
+    multiPartRequest(null, multiPartContent(binary), test);
+
+    // With streaming, getParts() still works, by reading all of the parts into memory.
+    multiPartRequest(
+        null,
+        multiPartContent(binary),
+        request -> {
+          assertThat(request.getParts().keySet()).containsExactly("text", "binary");
+          validateReader(request.getParts().get("text").getReader());
+          try (InputStream inputStream = request.getParts().get("binary").getInputStream()) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(binary);
+          }
+        });
+  }
+
+  @Test
+  public void multiPartRequestWithFileParts() throws Exception {
+    Path location = Files.createTempDirectory("HttpTest");
+    MultiPartConfig config =
+        new MultiPartConfig.Builder().maxMemoryPartSize(100).location(location).build();
+    multiPartRequest(
+        config,
+        multiPartContent(RANDOM_BYTES),
+        request -> {
+          validateReader(request.getParts().get("text").getReader());
+          HttpPart bytesPart = request.getParts().get("binary");
+          assertThat(bytesPart.getContentLength()).isEqualTo(RANDOM_BYTES.length);
+          try (InputStream inputStream = bytesPart.getInputStream()) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(RANDOM_BYTES);
+          }
+        });
+  }
+
+  private void multiPartRequest(
+      MultiPartConfig config, MultiPartRequestContent multiPart, HttpRequestTest test)
+      throws Exception {
+    AtomicReference<HttpRequestTest> testReference = new AtomicReference<>(test);
+    AtomicReference<Throwable> exceptionReference = new AtomicReference<>();
+    HttpRequestHandler testHandler = new HttpRequestHandler(testReference, exceptionReference);
+    HttpClient httpClient = new HttpClient();
+    httpClient.start();
+    try (SimpleServer server = new SimpleServer(testHandler, config)) {
+      ContentResponse response =
+          httpClient.POST("http://localhost:" + serverPort + "/").body(multiPart).send();
+      assertThat(response.getStatus()).isEqualTo(HttpStatus.OK_200);
+      throwIfNotNull(exceptionReference.get());
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  private void validateReader(BufferedReader reader) {
+    String text = reader.lines().collect(Collectors.joining("\n", "", "\n"));
+    assertThat(text).isEqualTo(TEST_BODY);
+  }
+
+  @Test
+  public void multiPartRequest() throws Exception {
+    AtomicReference<HttpRequestTest> testReference = new AtomicReference<>();
+    AtomicReference<Throwable> exceptionReference = new AtomicReference<>();
+    HttpRequestHandler testHandler = new HttpRequestHandler(testReference, exceptionReference);
+    HttpClient httpClient = new HttpClient();
+    httpClient.start();
+    String uri = "http://localhost:" + serverPort + "/";
+    MultiPartRequestContent multiPart = multiPartContent(RANDOM_BYTES);
     HttpRequestTest test =
         request -> {
           // The Content-Type header will also have a boundary=something attribute.
           assertThat(request.getContentType().get()).startsWith("multipart/form-data");
           assertThat(request.getParts().keySet()).containsExactly("text", "binary");
+          assertThat(request.getParts()).isSameInstanceAs(request.getParts());
+          List<String> names = new ArrayList<>();
+          request.getPartIterator().forEachRemaining(part -> names.add(part.getName()));
+          assertThat(names).containsExactly("text", "binary").inOrder();
           HttpPart textPart = request.getParts().get("text");
           assertThat(textPart.getFileName()).isEmpty();
           assertThat(textPart.getContentLength()).isEqualTo(TEST_BODY.length());
@@ -398,8 +503,9 @@ public class HttpTest {
     @Override
     public boolean handle(Request request, Response response, Callback callback) {
       try {
-        testReference.get().test(new HttpResponseImpl(response));
-        callback.succeeded();
+        HttpResponseImpl responseImpl = new HttpResponseImpl(response);
+        testReference.get().test(responseImpl);
+        responseImpl.close(callback);
       } catch (Throwable t) {
         exceptionReference.set(t);
         Response.writeError(request, response, callback, t);
@@ -500,6 +606,93 @@ public class HttpTest {
             assertThat(response.getMediaType()).isEqualTo("application/octet-stream");
             assertThat(response.getContent()).isEqualTo(RANDOM_BYTES);
           }),
+      responseTest(
+          response -> {
+            try (BufferedWriter writer = response.getWriter()) {
+              writer.write("first\n");
+              response.flush();
+              writer.write("second\n");
+            }
+          },
+          response -> {
+            assertThat(response.getHeaders().get(HttpHeader.TRANSFER_ENCODING))
+                .isEqualTo("chunked");
+            assertThat(response.getContentAsString()).isEqualTo("first\nsecond\n");
+          }),
+      responseTest(
+          response -> {
+            // The second write starts only once the first has completed, and the function returns
+            // before the second write has completed.
+            response
+                .writeAsync(ByteBuffer.wrap(RANDOM_BYTES, 0, 100))
+                .thenRun(() -> response.writeAsync(ByteBuffer.wrap(RANDOM_BYTES, 100, 924)))
+                .toCompletableFuture()
+                .join();
+          },
+          response -> assertThat(response.getContent()).isEqualTo(RANDOM_BYTES)),
+      responseTest(
+          response -> {
+            response.writeAsync(ByteBuffer.wrap(RANDOM_BYTES)).toCompletableFuture().join();
+            try {
+              response.getEventStream();
+              fail("Expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+            }
+          },
+          response -> assertThat(response.getContent()).isEqualTo(RANDOM_BYTES)),
+      responseTest(
+          response -> {
+            response.setContentType("application/octet-stream");
+            response.send(ByteBuffer.wrap(RANDOM_BYTES));
+            try {
+              response.getOutputStream();
+              fail("Expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+            }
+          },
+          response -> {
+            assertThat(response.getHeaders().get(HttpHeader.CONTENT_LENGTH)).isEqualTo("1024");
+            assertThat(response.getContent()).isEqualTo(RANDOM_BYTES);
+          }),
+      responseTest(
+          response -> {
+            // Bigger than the output buffer, so without a known length this would be chunked.
+            byte[] content = new byte[100 * RANDOM_BYTES.length];
+            for (int i = 0; i < 100; i++) {
+              System.arraycopy(
+                  RANDOM_BYTES, 0, content, i * RANDOM_BYTES.length, RANDOM_BYTES.length);
+            }
+            Path file = Files.createTempFile("HttpTest", ".bin");
+            try {
+              Files.write(file, content);
+              response.sendFile(file);
+            } finally {
+              Files.delete(file);
+            }
+          },
+          response -> {
+            assertThat(response.getHeaders().get(HttpHeader.TRANSFER_ENCODING)).isNull();
+            assertThat(response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH))
+                .isEqualTo(102400);
+            assertThat(Arrays.copyOfRange(response.getContent(), 102400 - 1024, 102400))
+                .isEqualTo(RANDOM_BYTES);
+          }),
+      responseTest(
+          response -> {
+            HttpResponse.EventStream events = response.getEventStream();
+            events.send("hello");
+            events.send("update", "line 1\nline 2");
+            events.sendAsync(null, "bye").toCompletableFuture().join();
+          },
+          response -> {
+            assertThat(response.getMediaType()).isEqualTo("text/event-stream");
+            assertThat(response.getHeaders().get(HttpHeader.CACHE_CONTROL)).isEqualTo("no-cache");
+            assertThat(response.getContentAsString())
+                .isEqualTo(
+                    "data: hello\n\n"
+                        + "event: update\ndata: line 1\ndata: line 2\n\n"
+                        + "data: bye\n\n");
+          }),
     };
     for (ResponseTest test : tests) {
       testReference.set(test.responseOperation);
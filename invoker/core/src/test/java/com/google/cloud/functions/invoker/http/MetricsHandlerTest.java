@@ -0,0 +1,165 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.functions.invoker.EventDeduplicationCache;
+import com.google.cloud.functions.invoker.EventOrdering;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MetricsHandlerTest {
+  private static final String LABELS = "function=\"com.example.Echo\",signature=\"http\"";
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final HttpClient client = HttpClient.newHttpClient();
+  private Server server;
+  private URI base;
+
+  /** Echoes the request body, or answers 404 for {@code /missing}. */
+  private final Handler echo =
+      new Handler.Abstract() {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+            throws Exception {
+          calls.incrementAndGet();
+          if (request.getHttpURI().getPath().equals("/missing")) {
+            Response.writeError(request, response, callback, HttpStatus.NOT_FOUND_404);
+            return true;
+          }
+          Content.Sink.write(response, true, Content.Source.asString(request), callback);
+          return true;
+        }
+      };
+
+  @Before
+  public void startServer() throws Exception {
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(echo);
+    server.insertHandler(new MetricsHandler("com.example.Echo", "http", server.getThreadPool()));
+    server.start();
+    base = URI.create("http://localhost:" + connector.getLocalPort());
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    server.stop();
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+    return client.send(request.build(), BodyHandlers.ofString());
+  }
+
+  @Test
+  public void metricsAreServedWithoutCallingFunction() throws Exception {
+    send(HttpRequest.newBuilder(base.resolve("/")).POST(BodyPublishers.ofString("hello")));
+    send(HttpRequest.newBuilder(base.resolve("/missing")));
+
+    // A request is measured when its response has been written, which can be just after the client
+    // has read it.
+    String count = "function_request_duration_seconds_count{" + LABELS + "} 2\n";
+    HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve(MetricsHandler.PATH)));
+    for (int i = 0; i < 100 && !response.body().contains(count); i++) {
+      Thread.sleep(10);
+      response = send(HttpRequest.newBuilder(base.resolve(MetricsHandler.PATH)));
+    }
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(response.headers().firstValue("Content-Type").orElse(""))
+        .startsWith("text/plain; version=0.0.4");
+    String metrics = response.body();
+    assertThat(metrics).contains("function_requests_total{" + LABELS + ",code=\"200\"} 1\n");
+    assertThat(metrics).contains("function_requests_total{" + LABELS + ",code=\"404\"} 1\n");
+    assertThat(metrics)
+        .contains("function_request_duration_seconds_bucket{" + LABELS + ",le=\"+Inf\"} 2\n");
+    assertThat(metrics).contains(count);
+    assertThat(metrics).contains("function_requests_in_flight{" + LABELS + "} 0\n");
+    assertThat(metrics).contains("function_request_bytes_total{" + LABELS + "} 5\n");
+    assertThat(metrics).contains("# TYPE jetty_threads_busy gauge\n");
+    assertThat(metrics).contains("# TYPE function_log_records_total counter\n");
+  }
+
+  @Test
+  public void componentCountersAreReported() throws Exception {
+    // The components are found among the server's beans, wherever they are in the tree.
+    server.addBean(new EventOrdering("subject", 4, 1, 1));
+    server.addBean(new RequestCoalescingHandler(false, null), false);
+    server.addBean(new ConcurrencyLimitHandler(1, 10, 100, null), false);
+    server.addBean(new EventDeduplicationCache(10, Duration.ofMinutes(1)));
+    server.addBean(new ResponseCacheHandler(1024, false, List.of(), null), false);
+
+    String metrics = send(HttpRequest.newBuilder(base.resolve(MetricsHandler.PATH))).body();
+    assertThat(metrics).contains("# TYPE function_event_ordering_rejected_total counter\n");
+    assertThat(metrics).contains("function_event_ordering_waiting{" + LABELS + "} 0\n");
+    assertThat(metrics).contains("function_coalesced_requests_total{" + LABELS + "} 0\n");
+    assertThat(metrics).contains("function_concurrency_limit{" + LABELS + "} 10\n");
+    assertThat(metrics).contains("function_event_duplicates_total{" + LABELS + "} 0\n");
+    assertThat(metrics).contains("function_response_cache_entries{" + LABELS + "} 0\n");
+    assertThat(metrics).contains("function_concurrency_rejected_total{" + LABELS + "} 0\n");
+    // Components that are not configured report nothing.
+    assertThat(metrics).doesNotContain("function_memoized_hits_total");
+    assertThat(metrics).doesNotContain("function_spans_dropped_total");
+  }
+
+  @Test
+  public void histogramBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 0; value < 1_000_000; value = value * 2 + 1) {
+      int index = histogram.indexOf(value);
+      assertThat(LatencyHistogram.highestValueIn(index)).isAtLeast(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.highestValueIn(index - 1)).isLessThan(value);
+      }
+    }
+    // Buckets are at most 1/16 as wide as the values in them.
+    int index = histogram.indexOf(1_000_000);
+    long width =
+        LatencyHistogram.highestValueIn(index) - LatencyHistogram.highestValueIn(index - 1);
+    assertThat(width).isAtMost(1_000_000L / LatencyHistogram.SUB_BUCKETS);
+
+    histogram.record(5);
+    histogram.record(1_000);
+    histogram.record(2_000_000);
+    assertThat(histogram.countAtMost(10)).isEqualTo(1);
+    assertThat(histogram.countAtMost(1_000_000)).isEqualTo(2);
+    assertThat(histogram.countAtMost(Long.MAX_VALUE)).isEqualTo(3);
+    assertThat(histogram.count()).isEqualTo(3);
+    assertThat(histogram.sumMicros()).isEqualTo(2_001_005);
+  }
+}
@@ -0,0 +1,224 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RequestCoalescingHandlerTest {
+  private static final int REQUESTS = 5;
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final HttpClient client = HttpClient.newHttpClient();
+  private volatile boolean failFirstCall;
+  private Server server;
+  private RequestCoalescingHandler coalescing;
+  private URI base;
+
+  /**
+   * Waits until the test releases it, then answers with the number of times it has been called and
+   * the request body. If the query is {@code cookie}, the response sets a cookie, and if it is
+   * {@code vary}, the response varies on {@code Accept-Language}.
+   */
+  private final Handler slow =
+      new Handler.Abstract() {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+            throws Exception {
+          int call = calls.incrementAndGet();
+          String body = Content.Source.asString(request);
+          release.await(10, TimeUnit.SECONDS);
+          if ("cookie".equals(request.getHttpURI().getQuery())) {
+            response.getHeaders().put(HttpHeader.SET_COOKIE, "session=" + call);
+          }
+          if ("vary".equals(request.getHttpURI().getQuery())) {
+            response.getHeaders().put(HttpHeader.VARY, "Accept-Language");
+          }
+          if (failFirstCall && call == 1) {
+            callback.failed(new IllegalStateException("failed"));
+          } else {
+            Content.Sink.write(response, true, call + ":" + body, callback);
+          }
+          return true;
+        }
+      };
+
+  private void startServer(boolean coalesceBodies) throws Exception {
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    coalescing = new RequestCoalescingHandler(coalesceBodies, slow);
+    server.setHandler(coalescing);
+    server.start();
+    base = URI.create("http://localhost:" + connector.getLocalPort());
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    release.countDown();
+    server.stop();
+  }
+
+  /** Sends the requests, and releases the function once they have all arrived. */
+  private List<String> sendTogether(List<HttpRequest> requests, int expectedCalls)
+      throws Exception {
+    List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+    for (HttpRequest request : requests) {
+      responses.add(client.sendAsync(request, BodyHandlers.ofString()));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (calls.get() + coalescing.getWaiting() < requests.size()
+        && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(calls.get()).isEqualTo(expectedCalls);
+    release.countDown();
+    List<String> bodies = new ArrayList<>();
+    for (CompletableFuture<HttpResponse<String>> response : responses) {
+      bodies.add(response.get(10, TimeUnit.SECONDS).body());
+    }
+    return bodies;
+  }
+
+  private List<HttpRequest> identicalGets() {
+    List<HttpRequest> requests = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      requests.add(HttpRequest.newBuilder(base.resolve("/get?a=b")).build());
+    }
+    return requests;
+  }
+
+  @Test
+  public void identicalGetsShareOneCall() throws Exception {
+    startServer(false);
+    List<String> bodies = sendTogether(identicalGets(), 1);
+    assertThat(bodies).containsExactlyElementsIn(List.of("1:", "1:", "1:", "1:", "1:"));
+    assertThat(coalescing.getCoalesced()).isEqualTo(REQUESTS - 1);
+    assertThat(coalescing.getInFlight()).isEqualTo(0);
+  }
+
+  @Test
+  public void bodiesArePartOfTheKey() throws Exception {
+    startServer(true);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (String body : List.of("x", "y", "x", "y")) {
+      requests.add(
+          HttpRequest.newBuilder(base.resolve("/typed"))
+              .POST(BodyPublishers.ofString(body))
+              .build());
+    }
+    List<String> bodies = sendTogether(requests, 2);
+    // The leaders still see their bodies, after the handler has read them to compute the keys.
+    assertThat(bodies.get(0)).isEqualTo(bodies.get(2));
+    assertThat(bodies.get(1)).isEqualTo(bodies.get(3));
+    assertThat(bodies.get(0)).endsWith(":x");
+    assertThat(bodies.get(1)).endsWith(":y");
+    assertThat(coalescing.getCoalesced()).isEqualTo(2);
+  }
+
+  @Test
+  public void bodiesAreNotCoalescedUnlessEnabled() throws Exception {
+    startServer(false);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      requests.add(
+          HttpRequest.newBuilder(base.resolve("/http")).POST(BodyPublishers.ofString("x")).build());
+    }
+    sendTogether(requests, 2);
+    assertThat(coalescing.getCoalesced()).isEqualTo(0);
+  }
+
+  @Test
+  public void requestsWithCredentialsAreNotCoalesced() throws Exception {
+    startServer(false);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (String user : List.of("alice", "bob")) {
+      requests.add(
+          HttpRequest.newBuilder(base.resolve("/me"))
+              .header("Authorization", "Bearer " + user)
+              .build());
+    }
+    List<String> bodies = sendTogether(requests, 2);
+    assertThat(bodies.get(0)).isNotEqualTo(bodies.get(1));
+    assertThat(coalescing.getCoalesced()).isEqualTo(0);
+  }
+
+  @Test
+  public void privateResponsesAreNotShared() throws Exception {
+    startServer(false);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      requests.add(HttpRequest.newBuilder(base.resolve("/get?cookie")).build());
+    }
+    sendTogether(requests, 1);
+    assertThat(calls.get()).isEqualTo(REQUESTS);
+    assertThat(coalescing.getCoalesced()).isEqualTo(0);
+    assertThat(coalescing.getFallbacks()).isEqualTo(REQUESTS - 1);
+  }
+
+  @Test
+  public void varyingResponsesAreNotShared() throws Exception {
+    startServer(false);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      requests.add(
+          HttpRequest.newBuilder(base.resolve("/get?vary"))
+              .header("Accept-Language", i % 2 == 0 ? "en" : "fr")
+              .build());
+    }
+    sendTogether(requests, 1);
+    assertThat(calls.get()).isEqualTo(REQUESTS);
+    assertThat(coalescing.getCoalesced()).isEqualTo(0);
+    assertThat(coalescing.getFallbacks()).isEqualTo(REQUESTS - 1);
+  }
+
+  @Test
+  public void followersCallFunctionWhenLeaderFails() throws Exception {
+    failFirstCall = true;
+    startServer(false);
+    List<String> bodies = new ArrayList<>(sendTogether(identicalGets(), 1));
+    assertThat(calls.get()).isEqualTo(REQUESTS);
+    assertThat(coalescing.getFallbacks()).isEqualTo(REQUESTS - 1);
+    bodies.removeIf(String::isEmpty);
+    assertThat(bodies).hasSize(REQUESTS - 1);
+  }
+}
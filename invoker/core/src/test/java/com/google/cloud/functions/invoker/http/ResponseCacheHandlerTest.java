@@ -0,0 +1,178 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Fields;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResponseCacheHandlerTest {
+  private final AtomicInteger calls = new AtomicInteger();
+  private final HttpClient client = HttpClient.newHttpClient();
+  private Server server;
+  private ResponseCacheHandler cache;
+  private URI base;
+
+  /**
+   * Answers with the number of times it has been called, and with the {@code Cache-Control} and
+   * {@code Vary} headers given by the {@code cc} and {@code vary} query parameters. If there is a
+   * {@code status} parameter, answers with that status and no body instead.
+   */
+  private final Handler counting =
+      new Handler.Abstract() {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback) {
+          Fields query = Request.extractQueryParameters(request);
+          if (query.getValue("cc") != null) {
+            response.getHeaders().put(HttpHeader.CACHE_CONTROL, query.getValue("cc"));
+          }
+          if (query.getValue("vary") != null) {
+            response.getHeaders().put(HttpHeader.VARY, query.getValue("vary"));
+          }
+          String body = calls.incrementAndGet() + "\n";
+          if (query.getValue("status") != null) {
+            response.setStatus(Integer.parseInt(query.getValue("status")));
+            body = "";
+          }
+          Content.Sink.write(response, true, body, callback);
+          return true;
+        }
+      };
+
+  @Before
+  public void startServer() throws Exception {
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setPort(0);
+    server.addConnector(connector);
+    cache = new ResponseCacheHandler(4096, true, List.of("Accept-Language"), counting);
+    server.setHandler(cache);
+    server.start();
+    base = URI.create("http://localhost:" + connector.getLocalPort());
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    server.stop();
+  }
+
+  private HttpResponse<String> get(String path, String... headers) throws Exception {
+    HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(path));
+    if (headers.length > 0) {
+      request.headers(headers);
+    }
+    return client.send(
+        request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void cacheableResponseIsReused() throws Exception {
+    assertThat(get("/a?cc=max-age=60").body()).isEqualTo("1\n");
+    HttpResponse<String> second = get("/a?cc=max-age=60");
+    assertThat(second.body()).isEqualTo("1\n");
+    assertThat(second.headers().firstValue("Cache-Control")).hasValue("max-age=60");
+    assertThat(second.headers().firstValue("Age")).isPresent();
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHitRatio()).isEqualTo(0.5);
+    // The body is 2 bytes, but the key, headers and overhead are counted too.
+    assertThat(cache.getBytes()).isGreaterThan(2L);
+  }
+
+  @Test
+  public void uncacheableResponsesAreNotStored() throws Exception {
+    get("/b");
+    get("/b");
+    get("/c?cc=no-store,max-age=60");
+    get("/c?cc=no-store,max-age=60");
+    get("/d?cc=private,max-age=60");
+    get("/d?cc=private,max-age=60");
+    get("/e?cc=max-age=60&vary=Cookie");
+    get("/e?cc=max-age=60&vary=Cookie");
+    assertThat(calls.get()).isEqualTo(8);
+    assertThat(cache.getEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void varyHeadersArePartOfTheKey() throws Exception {
+    String path = "/f?cc=max-age=60&vary=Accept-Language";
+    assertThat(get(path, "Accept-Language", "en").body()).isEqualTo("1\n");
+    assertThat(get(path, "Accept-Language", "fr").body()).isEqualTo("2\n");
+    assertThat(get(path, "Accept-Language", "en").body()).isEqualTo("1\n");
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void requestsWithCredentialsBypassCache() throws Exception {
+    get("/i?cc=max-age=60", "Authorization", "Bearer a");
+    get("/i?cc=max-age=60", "Cookie", "session=a");
+    assertThat(get("/i?cc=max-age=60", "Cookie", "session=b").body()).isEqualTo("3\n");
+    assertThat(cache.getEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void requestNoCacheCallsFunction() throws Exception {
+    get("/g?cc=max-age=60");
+    assertThat(get("/g?cc=max-age=60", "Cache-Control", "no-cache").body()).isEqualTo("2\n");
+    assertThat(get("/g?cc=max-age=60").body()).isEqualTo("2\n");
+  }
+
+  @Test
+  public void leastRecentlyUsedIsEvicted() throws Exception {
+    // Each entry takes a few hundred bytes, so the 4096-byte cache cannot hold all of them.
+    for (int i = 0; i < 600; i++) {
+      get("/h" + i + "?cc=max-age=60");
+    }
+    assertThat(cache.getBytes()).isAtMost(4096L);
+    int before = calls.get();
+    get("/h0?cc=max-age=60");
+    assertThat(calls.get()).isEqualTo(before + 1);
+    get("/h599?cc=max-age=60");
+    assertThat(calls.get()).isEqualTo(before + 1);
+  }
+
+  @Test
+  public void emptyResponsesAreBounded() throws Exception {
+    // Cacheable 404s have no body, but must still be evicted rather than pile up.
+    for (int i = 0; i < 600; i++) {
+      assertThat(get("/n" + i + "?cc=max-age=60&status=404").statusCode()).isEqualTo(404);
+    }
+    assertThat(cache.getBytes()).isAtMost(4096L);
+    assertThat(cache.getEntries()).isLessThan(600);
+    assertThat(cache.getEntries()).isGreaterThan(0);
+  }
+}
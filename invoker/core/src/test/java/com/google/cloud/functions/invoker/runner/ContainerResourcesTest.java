@@ -0,0 +1,57 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.runner;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ContainerResourcesTest {
+  private static final long MIB = 1024 * 1024;
+
+  @Test
+  public void smallInstance() {
+    ContainerResources resources = new ContainerResources(1, 256 * MIB);
+    assertThat(resources.defaultMaxThreads()).isEqualTo(128);
+    assertThat(resources.defaultMinThreads(128)).isEqualTo(8);
+    assertThat(resources.defaultAcceptors()).isEqualTo(1);
+    assertThat(resources.defaultSelectors()).isEqualTo(1);
+    assertThat(resources.defaultOutputBufferSize()).isEqualTo(16 * 1024);
+  }
+
+  @Test
+  public void tinyInstanceStillHasEnoughThreads() {
+    ContainerResources resources = new ContainerResources(1, 64 * MIB);
+    assertThat(resources.defaultMaxThreads()).isEqualTo(64);
+  }
+
+  @Test
+  public void largeInstance() {
+    ContainerResources resources = new ContainerResources(8, 32 * 1024 * MIB);
+    assertThat(resources.defaultMaxThreads()).isEqualTo(1024);
+    assertThat(resources.defaultSelectors()).isEqualTo(4);
+    assertThat(resources.defaultOutputBufferSize()).isEqualTo(-1);
+  }
+
+  @Test
+  public void detect() {
+    ContainerResources resources = ContainerResources.detect();
+    assertThat(resources.cpus()).isAtLeast(1);
+    assertThat(resources.memoryBytes()).isGreaterThan(0L);
+  }
+}
@@ -4,17 +4,50 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static java.util.stream.Collectors.joining;
 
+import com.google.cloud.functions.invoker.testfunctions.Closing;
+import com.google.cloud.functions.invoker.testfunctions.Initializing;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.InputStreamRequestContent;
+import org.eclipse.jetty.client.StringRequestContent;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.io.Transport;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -94,6 +127,489 @@ public class InvokerTest {
     assertThat(invokerClasspath(invoker.get())).isEqualTo(FAKE_CLASSPATH);
   }
 
+  @Test
+  public void defaultHttp2Cleartext() {
+    Optional<Invoker> invoker = Invoker.makeInvoker();
+    assertThat(invoker.get().getServerConfig().http2Cleartext()).isFalse();
+  }
+
+  @Test
+  public void http2CleartextViaOption() {
+    Optional<Invoker> invoker =
+        Invoker.makeInvoker("--http2-cleartext", "--http2-max-concurrent-streams", "500");
+    ServerConfig config = invoker.get().getServerConfig();
+    assertThat(config.http2Cleartext()).isTrue();
+    assertThat(config.http2MaxConcurrentStreams()).hasValue(500);
+    assertThat(config.http2InitialStreamRecvWindow()).isEmpty();
+  }
+
+  @Test
+  public void http2CleartextViaEnvironment() {
+    Map<String, String> env =
+        Map.of(
+            "FUNCTION_HTTP2_CLEARTEXT", "true",
+            "FUNCTION_HTTP2_INITIAL_SESSION_RECV_WINDOW", "4194304");
+    Optional<Invoker> invoker = Invoker.makeInvoker(env);
+    ServerConfig config = invoker.get().getServerConfig();
+    assertThat(config.http2Cleartext()).isTrue();
+    assertThat(config.http2InitialSessionRecvWindow()).hasValue(4194304);
+  }
+
+  @Test
+  public void http2CleartextServer() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Invoker invoker =
+        new Invoker(
+            port,
+            "com.google.cloud.functions.invoker.testfunctions.HelloWorld",
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().setHttp2Cleartext(true).build());
+    HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+    invoker.startTestServer();
+    try {
+      httpClient.start();
+      ContentResponse response = httpClient.GET("http://localhost:" + port + "/");
+      assertThat(response.getVersion()).isEqualTo(HttpVersion.HTTP_2);
+      assertThat(response.getContentAsString()).isEqualTo("hello\n");
+    } finally {
+      httpClient.stop();
+      invoker.stopServer();
+    }
+  }
+
+  @Test
+  public void connectorSettingsViaOptionAndEnvironment() {
+    Map<String, String> env =
+        Map.of("FUNCTION_MAX_THREADS", "200", "FUNCTION_OUTPUT_BUFFER_SIZE", "8192");
+    Optional<Invoker> invoker =
+        Invoker.makeInvoker(env, "--max-threads", "300", "--idle-timeout-ms", "60000");
+    ServerConfig config = invoker.get().getServerConfig();
+    assertThat(config.maxThreads()).hasValue(300);
+    assertThat(config.outputBufferSize()).hasValue(8192);
+    assertThat(config.idleTimeoutMillis()).hasValue(60000);
+    assertThat(config.selectors()).isEmpty();
+  }
+
+  @Test
+  public void socketPathViaOption() {
+    Optional<Invoker> invoker =
+        Invoker.makeInvoker("--socket-path", "/tmp/function.sock", "--socket-only");
+    ServerConfig config = invoker.get().getServerConfig();
+    assertThat(config.socketPath()).hasValue(Paths.get("/tmp/function.sock"));
+    assertThat(config.listensOnPort()).isFalse();
+  }
+
+  @Test
+  public void socketOnlyWithoutSocketPath() {
+    Map<String, String> env = Collections.singletonMap("FUNCTION_SOCKET_ONLY", "true");
+    Optional<Invoker> invoker = Invoker.makeInvoker(env);
+    assertThat(invoker.get().getServerConfig().listensOnPort()).isTrue();
+  }
+
+  @Test
+  public void multipartOptions() {
+    Map<String, String> env = Map.of("FUNCTION_MULTIPART_MAX_MEMORY_PART_SIZE", "65536");
+    Optional<Invoker> invoker =
+        Invoker.makeInvoker(env, "--multipart-location", "/mnt/uploads", "--multipart-streaming");
+    ServerConfig config = invoker.get().getServerConfig();
+    assertThat(config.multipartMaxMemoryPartSize()).hasValue(65536);
+    assertThat(config.multipartLocation()).hasValue(Paths.get("/mnt/uploads"));
+    assertThat(config.multipartStreaming()).isTrue();
+  }
+
+  @Test
+  public void maxRequestBodySizeOption() {
+    Map<String, String> env = Map.of("FUNCTION_MAX_REQUEST_BODY_SIZE", "1048576");
+    assertThat(Invoker.makeInvoker(env).get().getServerConfig().maxRequestBodySize())
+        .hasValue(1048576L);
+    Optional<Invoker> invoker = Invoker.makeInvoker(env, "--max-request-body-size", "2048");
+    assertThat(invoker.get().getServerConfig().maxRequestBodySize()).hasValue(2048L);
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().maxRequestBodySize())
+        .isEmpty();
+  }
+
+  @Test
+  public void maxRequestBodySize() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Invoker invoker =
+        new Invoker(
+            port,
+            "com.google.cloud.functions.invoker.testfunctions.Echo",
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().setMaxRequestBodySize(1000L).build());
+    HttpClient httpClient = new HttpClient();
+    invoker.startTestServer();
+    try {
+      httpClient.start();
+      String uri = "http://localhost:" + port + "/";
+      ContentResponse small =
+          httpClient.POST(uri).body(new StringRequestContent("x".repeat(1000))).send();
+      assertThat(small.getStatus()).isEqualTo(HttpStatus.OK_200);
+
+      // The Content-Length is too big, so the request is rejected before the function is called.
+      ContentResponse big =
+          httpClient.POST(uri).body(new StringRequestContent("x".repeat(1001))).send();
+      assertThat(big.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE_413);
+
+      // Without a Content-Length, the request fails once the function has read too much.
+      ContentResponse chunked =
+          httpClient
+              .POST(uri)
+              .body(
+                  new InputStreamRequestContent(
+                      new ByteArrayInputStream("x".repeat(5000).getBytes(StandardCharsets.UTF_8))))
+              .send();
+      assertThat(chunked.getStatus()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE_413);
+    } finally {
+      httpClient.stop();
+      invoker.stopServer();
+    }
+  }
+
+  @Test
+  public void shutdownGracePeriodOption() {
+    Map<String, String> env = Map.of("FUNCTION_SHUTDOWN_GRACE_PERIOD_MS", "5000");
+    assertThat(Invoker.makeInvoker(env).get().getServerConfig().shutdownGracePeriodMillis())
+        .hasValue(5000);
+    Optional<Invoker> invoker = Invoker.makeInvoker(env, "--shutdown-grace-period-ms", "2000");
+    assertThat(invoker.get().getServerConfig().shutdownGracePeriodMillis()).hasValue(2000);
+  }
+
+  @Test
+  public void adaptiveConcurrencyOption() {
+    Map<String, String> env =
+        Map.of("FUNCTION_ADAPTIVE_CONCURRENCY", "true", "FUNCTION_MAX_CONCURRENCY", "50");
+    ServerConfig config = Invoker.makeInvoker(env).get().getServerConfig();
+    assertThat(config.adaptiveConcurrency()).isTrue();
+    assertThat(config.maxConcurrency()).hasValue(50);
+    config =
+        Invoker.makeInvoker(Map.of(), "--adaptive-concurrency", "--max-concurrency", "10")
+            .get()
+            .getServerConfig();
+    assertThat(config.adaptiveConcurrency()).isTrue();
+    assertThat(config.maxConcurrency()).hasValue(10);
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().adaptiveConcurrency())
+        .isFalse();
+  }
+
+  @Test
+  public void eventDeduplicationOptions() {
+    Map<String, String> env =
+        Map.of(
+            "FUNCTION_EVENT_DEDUPLICATION_SIZE", "1000",
+            "FUNCTION_EVENT_DEDUPLICATION_TTL_SECONDS", "60");
+    ServerConfig config = Invoker.makeInvoker(env).get().getServerConfig();
+    assertThat(config.eventDeduplicationSize()).hasValue(1000);
+    assertThat(config.eventDeduplicationTtlSeconds()).hasValue(60);
+    config =
+        Invoker.makeInvoker(Map.of(), "--event-deduplication-size", "500")
+            .get()
+            .getServerConfig();
+    assertThat(config.eventDeduplicationSize()).hasValue(500);
+    assertThat(config.eventDeduplicationTtlSeconds()).isEmpty();
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().eventDeduplicationSize())
+        .isEmpty();
+  }
+
+  @Test
+  public void responseCacheOptions() {
+    Map<String, String> env =
+        Map.of(
+            "FUNCTION_RESPONSE_CACHE_SIZE", "1048576",
+            "FUNCTION_RESPONSE_CACHE_VARY", "Accept-Language, Accept",
+            "FUNCTION_RESPONSE_CACHE_OFF_HEAP", "true");
+    ServerConfig config = Invoker.makeInvoker(env).get().getServerConfig();
+    assertThat(config.responseCacheSize()).hasValue(1048576L);
+    assertThat(config.responseCacheVary()).hasValue("Accept-Language, Accept");
+    assertThat(config.responseCacheOffHeap()).isTrue();
+    config =
+        Invoker.makeInvoker(Map.of(), "--response-cache-size", "4096", "--response-cache-off-heap")
+            .get()
+            .getServerConfig();
+    assertThat(config.responseCacheSize()).hasValue(4096L);
+    assertThat(config.responseCacheVary()).isEmpty();
+    assertThat(config.responseCacheOffHeap()).isTrue();
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().responseCacheSize())
+        .isEmpty();
+  }
+
+  @Test
+  public void requestCoalescingOption() {
+    assertThat(
+            Invoker.makeInvoker(Map.of("FUNCTION_REQUEST_COALESCING", "true"))
+                .get()
+                .getServerConfig()
+                .requestCoalescing())
+        .isTrue();
+    assertThat(
+            Invoker.makeInvoker(Map.of(), "--request-coalescing")
+                .get()
+                .getServerConfig()
+                .requestCoalescing())
+        .isTrue();
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().requestCoalescing())
+        .isFalse();
+  }
+
+  @Test
+  public void eventOrderingOptions() {
+    Map<String, String> env =
+        Map.of("FUNCTION_EVENT_ORDERING_KEY", "subject", "FUNCTION_EVENT_ORDERING_LANES", "8");
+    ServerConfig config = Invoker.makeInvoker(env).get().getServerConfig();
+    assertThat(config.eventOrderingKey()).hasValue("subject");
+    assertThat(config.eventOrderingLanes()).hasValue(8);
+    config =
+        Invoker.makeInvoker(Map.of(), "--event-ordering-key", "orderingkey")
+            .get()
+            .getServerConfig();
+    assertThat(config.eventOrderingKey()).hasValue("orderingkey");
+    assertThat(config.eventOrderingLanes()).isEmpty();
+  }
+
+  @Test
+  public void functionInstancesOption() {
+    ServerConfig config =
+        Invoker.makeInvoker(Map.of("FUNCTION_INSTANCES", "4")).get().getServerConfig();
+    assertThat(config.functionInstances()).hasValue(4);
+    config = Invoker.makeInvoker(Map.of(), "--function-instances", "2").get().getServerConfig();
+    assertThat(config.functionInstances()).hasValue(2);
+    config = Invoker.makeInvoker(Map.of()).get().getServerConfig();
+    assertThat(config.functionInstances()).isEmpty();
+  }
+
+  @Test
+  public void metricsOption() {
+    assertThat(
+            Invoker.makeInvoker(Map.of("FUNCTION_METRICS", "true"))
+                .get()
+                .getServerConfig()
+                .metrics())
+        .isTrue();
+    assertThat(Invoker.makeInvoker(Map.of(), "--metrics").get().getServerConfig().metrics())
+        .isTrue();
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().metrics()).isFalse();
+  }
+
+  @Test
+  public void traceEndpointOption() {
+    String endpoint = "http://localhost:4318/v1/traces";
+    assertThat(
+            Invoker.makeInvoker(Map.of("FUNCTION_TRACE_ENDPOINT", endpoint))
+                .get()
+                .getServerConfig()
+                .traceEndpoint())
+        .hasValue(endpoint);
+    assertThat(
+            Invoker.makeInvoker(Map.of(), "--trace-endpoint", endpoint)
+                .get()
+                .getServerConfig()
+                .traceEndpoint())
+        .hasValue(endpoint);
+    assertThat(Invoker.makeInvoker(Map.of()).get().getServerConfig().traceEndpoint()).isEmpty();
+  }
+
+  @Test
+  public void stopServerDrainsRequestsAndClosesFunction() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Closing.started = new CountDownLatch(1);
+    Closing.closed = false;
+    Invoker invoker =
+        new Invoker(
+            port,
+            Closing.class.getName(),
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().setShutdownGracePeriodMillis(5000).build());
+    HttpClient httpClient = new HttpClient();
+    invoker.startTestServer();
+    try {
+      httpClient.start();
+      CompletableFuture<ContentResponse> inFlight =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return httpClient.GET("http://localhost:" + port + "/");
+                } catch (Exception e) {
+                  throw new CompletionException(e);
+                }
+              });
+      assertThat(Closing.started.await(5, TimeUnit.SECONDS)).isTrue();
+      invoker.stopServer();
+
+      // The request that was in progress finished before the function was closed.
+      ContentResponse response = inFlight.get(5, TimeUnit.SECONDS);
+      assertThat(response.getStatus()).isEqualTo(HttpStatus.OK_200);
+      assertThat(response.getContentAsString()).isEqualTo("open\n");
+      assertThat(Closing.closed).isTrue();
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void functionIsInitializedBeforeServingAndClosedOnStop() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Initializing.closed = false;
+    Invoker invoker =
+        new Invoker(
+            port,
+            Initializing.class.getName(),
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().build());
+    HttpClient httpClient = new HttpClient();
+    invoker.startTestServer();
+    try {
+      httpClient.start();
+      ContentResponse response = httpClient.GET("http://localhost:" + port + "/");
+      assertThat(response.getContentAsString()).isEqualTo("ready\n");
+      invoker.stopServer();
+      assertThat(Initializing.closed).isTrue();
+    } finally {
+      httpClient.stop();
+    }
+  }
+
+  @Test
+  public void flightRecorderEventsForInvocation() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Invoker invoker =
+        new Invoker(
+            port,
+            "com.google.cloud.functions.invoker.testfunctions.HelloWorld",
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().build());
+    HttpClient httpClient = new HttpClient();
+    Path recordingFile = Files.createTempFile("invoker", ".jfr");
+    invoker.startTestServer();
+    try (Recording recording = new Recording()) {
+      for (String name : List.of("Admission", "FunctionExecution", "ResponseClose")) {
+        recording.enable("com.google.cloud.functions." + name).withThreshold(Duration.ZERO);
+      }
+      recording.start();
+      httpClient.start();
+      httpClient
+          .newRequest("http://localhost:" + port + "/")
+          .headers(headers -> headers.put("HTTP_FUNCTION_EXECUTION_ID", "1234abcd"))
+          .send();
+      recording.stop();
+      recording.dump(recordingFile);
+    } finally {
+      httpClient.stop();
+      invoker.stopServer();
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+    Files.delete(recordingFile);
+    assertThat(events.stream().map(e -> e.getEventType().getName()).collect(Collectors.toSet()))
+        .containsExactly(
+            "com.google.cloud.functions.Admission",
+            "com.google.cloud.functions.FunctionExecution",
+            "com.google.cloud.functions.ResponseClose");
+    for (RecordedEvent event : events) {
+      assertThat(event.getString("function"))
+          .isEqualTo("com.google.cloud.functions.invoker.testfunctions.HelloWorld");
+      assertThat(event.getString("signatureType")).isEqualTo("http");
+      assertThat(event.getString("executionId")).isEqualTo("1234abcd");
+    }
+  }
+
+  @Test
+  public void unixDomainSocketServer() throws Exception {
+    Path socketPath = Files.createTempDirectory("invoker").resolve("function.sock");
+    Invoker invoker =
+        new Invoker(
+            8080,
+            "com.google.cloud.functions.invoker.testfunctions.HelloWorld",
+            "http",
+            getClass().getClassLoader(),
+            ServerConfig.builder().setSocketPath(socketPath).setSocketOnly(true).build());
+    HttpClient httpClient = new HttpClient();
+    invoker.startTestServer();
+    try {
+      httpClient.start();
+      ContentResponse response =
+          httpClient
+              .newRequest("http://localhost/")
+              .transport(new Transport.TCPUnix(socketPath))
+              .send();
+      assertThat(response.getContentAsString()).isEqualTo("hello\n");
+    } finally {
+      httpClient.stop();
+      invoker.stopServer();
+    }
+  }
+
+  @Test
+  public void webSocketServer() throws Exception {
+    int port;
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      port = serverSocket.getLocalPort();
+    }
+    Invoker invoker =
+        new Invoker(
+            port,
+            "com.google.cloud.functions.invoker.testfunctions.WebSocketEcho",
+            null,
+            getClass().getClassLoader());
+    TestListener listener = new TestListener();
+    HttpClient httpClient = new HttpClient();
+    WebSocketClient webSocketClient = new WebSocketClient(httpClient);
+    invoker.startTestServer();
+    try {
+      webSocketClient.start();
+      Session session =
+          webSocketClient
+              .connect(listener, URI.create("ws://localhost:" + port + "/chat"))
+              .get(5, TimeUnit.SECONDS);
+      assertThat(listener.received.poll(5, TimeUnit.SECONDS)).isEqualTo("open");
+      session.sendText("hello", Callback.NOOP);
+      assertThat(listener.received.poll(5, TimeUnit.SECONDS)).isEqualTo("/chat: hello");
+      session.sendText("bye", Callback.NOOP);
+      assertThat(listener.closeStatus.get(5, TimeUnit.SECONDS)).isEqualTo(StatusCode.NORMAL);
+
+      ContentResponse response = httpClient.GET("http://localhost:" + port + "/chat");
+      assertThat(response.getStatus()).isEqualTo(HttpStatus.UPGRADE_REQUIRED_426);
+    } finally {
+      webSocketClient.stop();
+      invoker.stopServer();
+    }
+  }
+
+  /** A WebSocket client endpoint. Jetty requires the class to be public. */
+  public static class TestListener implements Session.Listener.AutoDemanding {
+    final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    final CompletableFuture<Integer> closeStatus = new CompletableFuture<>();
+
+    @Override
+    public void onWebSocketText(String message) {
+      received.add(message);
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+      closeStatus.complete(statusCode);
+    }
+  }
+
   private static String invokerClasspath(Invoker invoker) {
     URLClassLoader urlClassLoader = (URLClassLoader) invoker.getFunctionClassLoader();
     return Arrays.stream(urlClassLoader.getURLs())
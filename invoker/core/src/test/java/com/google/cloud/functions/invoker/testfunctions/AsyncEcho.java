@@ -0,0 +1,68 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.testfunctions;
+
+import com.google.cloud.functions.AsyncHttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/** Echoes the request body, reading it one buffer at a time from the body publisher. */
+public class AsyncEcho implements AsyncHttpFunction {
+  @Override
+  public CompletionStage<Void> service(HttpRequest request, HttpResponse response) {
+    CompletableFuture<byte[]> body = new CompletableFuture<>();
+    request
+        .getBodyPublisher()
+        .subscribe(
+            new Flow.Subscriber<ByteBuffer>() {
+              private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+              private Flow.Subscription subscription;
+
+              @Override
+              public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+              }
+
+              @Override
+              public void onNext(ByteBuffer buffer) {
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                bytes.write(chunk, 0, chunk.length);
+                subscription.request(1);
+              }
+
+              @Override
+              public void onError(Throwable throwable) {
+                body.completeExceptionally(throwable);
+              }
+
+              @Override
+              public void onComplete() {
+                body.complete(bytes.toByteArray());
+              }
+            });
+    return body.thenCompose(
+        bytes -> {
+          response.setContentType("text/plain");
+          return response.writeAsync(ByteBuffer.wrap(bytes));
+        });
+  }
+}
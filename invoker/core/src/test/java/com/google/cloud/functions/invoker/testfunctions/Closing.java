@@ -0,0 +1,41 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.testfunctions;
+
+import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A function that is {@link AutoCloseable}. Each call signals {@link #started} and then takes a
+ * while to respond, so a test can stop the server while the call is in progress.
+ */
+public class Closing implements HttpFunction, AutoCloseable {
+  public static volatile CountDownLatch started = new CountDownLatch(1);
+  public static volatile boolean closed;
+
+  @Override
+  public void service(HttpRequest request, HttpResponse response) throws Exception {
+    started.countDown();
+    Thread.sleep(500);
+    response.getWriter().write(closed ? "closed\n" : "open\n");
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
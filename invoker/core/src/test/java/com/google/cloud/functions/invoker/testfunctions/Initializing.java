@@ -0,0 +1,55 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.testfunctions;
+
+import com.google.cloud.functions.FunctionLifecycle;
+import com.google.cloud.functions.HttpFunction;
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A function with {@linkplain FunctionLifecycle lifecycle hooks}. Its {@code init} takes a while to
+ * finish asynchronously, and each call reports whether it had finished.
+ */
+public class Initializing implements HttpFunction, FunctionLifecycle {
+  public static volatile boolean closed;
+
+  private volatile boolean ready;
+
+  @Override
+  public CompletionStage<Void> init() {
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          ready = true;
+        });
+  }
+
+  @Override
+  public void service(HttpRequest request, HttpResponse response) throws Exception {
+    response.getWriter().write(ready ? "ready\n" : "not ready\n");
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
@@ -0,0 +1,42 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.testfunctions;
+
+import com.google.cloud.functions.Memoized;
+import com.google.cloud.functions.TypedFunction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Reports how many times it has been called, which does not change for a repeated request. */
+@Memoized
+public class MemoizedTyped implements TypedFunction<MemoizedRequest, MemoizedResponse> {
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Override
+  public MemoizedResponse apply(MemoizedRequest req) throws Exception {
+    MemoizedResponse resp = new MemoizedResponse();
+    resp.name = req.name;
+    resp.call = calls.incrementAndGet();
+    return resp;
+  }
+}
+
+class MemoizedRequest {
+  String name;
+}
+
+class MemoizedResponse {
+  String name;
+  int call;
+}
@@ -0,0 +1,35 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.testfunctions;
+
+import com.google.cloud.functions.WebSocketFunction;
+import com.google.cloud.functions.WebSocketSession;
+import java.net.URI;
+
+public class WebSocketEcho implements WebSocketFunction {
+  @Override
+  public void onOpen(WebSocketSession session) {
+    session.sendText("open");
+  }
+
+  @Override
+  public void onMessage(WebSocketSession session, String message) {
+    if (message.equals("bye")) {
+      session.close(1000, "bye");
+    } else {
+      session.sendText(URI.create(session.getUri()).getPath() + ": " + message);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.cloud.functions.invoker.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.http.HttpFields;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TraceContextTest {
+  private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+  @Test
+  public void parsesTraceparent() {
+    TraceContext context =
+        TraceContext.parseTraceparent("00-" + TRACE_ID + "-b7ad6b7169203331-01");
+    assertThat(context.getTraceId()).isEqualTo(TRACE_ID);
+    assertThat(context.getSpanId()).isEqualTo("b7ad6b7169203331");
+    assertThat(context.isSampled()).isTrue();
+
+    context = TraceContext.parseTraceparent("00-" + TRACE_ID + "-b7ad6b7169203331-00");
+    assertThat(context.isSampled()).isFalse();
+  }
+
+  @Test
+  public void rejectsMalformedTraceparent() {
+    assertThat(TraceContext.parseTraceparent(null)).isNull();
+    assertThat(TraceContext.parseTraceparent("00-" + TRACE_ID + "-b7ad6b7169203331")).isNull();
+    assertThat(TraceContext.parseTraceparent("ff-" + TRACE_ID + "-b7ad6b7169203331-01")).isNull();
+    assertThat(
+            TraceContext.parseTraceparent(
+                "00-" + TRACE_ID.toUpperCase() + "-b7ad6b7169203331-01"))
+        .isNull();
+    assertThat(
+            TraceContext.parseTraceparent(
+                "00-00000000000000000000000000000000-b7ad6b7169203331-01"))
+        .isNull();
+    assertThat(TraceContext.parseTraceparent("00-" + TRACE_ID + "-0000000000000000-01")).isNull();
+    assertThat(TraceContext.parseTraceparent("00-" + TRACE_ID + "-b7ad6b7169203331-01-extra"))
+        .isNull();
+    // Later versions may add fields.
+    assertThat(TraceContext.parseTraceparent("01-" + TRACE_ID + "-b7ad6b7169203331-01-extra"))
+        .isNotNull();
+  }
+
+  @Test
+  public void parsesCloudTraceContext() {
+    TraceContext context = TraceContext.parseCloudTraceContext(TRACE_ID + "/1;o=1");
+    assertThat(context.getTraceId()).isEqualTo(TRACE_ID);
+    assertThat(context.getSpanId()).isEqualTo("0000000000000001");
+    assertThat(context.isSampled()).isTrue();
+
+    context = TraceContext.parseCloudTraceContext(TRACE_ID.toUpperCase());
+    assertThat(context.getTraceId()).isEqualTo(TRACE_ID);
+    assertThat(context.getSpanId()).isNull();
+    assertThat(context.isSampled()).isFalse();
+
+    assertThat(TraceContext.parseCloudTraceContext(TRACE_ID + "/x;o=1")).isNull();
+    assertThat(TraceContext.parseCloudTraceContext("abc/1;o=1")).isNull();
+  }
+
+  @Test
+  public void traceparentTakesPrecedence() {
+    HttpFields headers =
+        HttpFields.build()
+            .put("X-Cloud-Trace-Context", "105445aa7843bc8bf206b12000100000/1;o=1")
+            .put("traceparent", "00-" + TRACE_ID + "-b7ad6b7169203331-01");
+    assertThat(TraceContext.fromHeaders(headers).getTraceId()).isEqualTo(TRACE_ID);
+
+    headers = HttpFields.build().put("X-Cloud-Trace-Context", TRACE_ID + "/1;o=1");
+    assertThat(TraceContext.fromHeaders(headers).getTraceId()).isEqualTo(TRACE_ID);
+    assertThat(TraceContext.fromHeaders(HttpFields.EMPTY)).isNull();
+  }
+
+  @Test
+  public void tracerExportsSampledSpans() throws Exception {
+    List<Span> exported = new ArrayList<>();
+    Tracer tracer =
+        new Tracer(
+            spans -> {
+              synchronized (exported) {
+                exported.addAll(spans);
+              }
+            });
+    tracer.start();
+    HttpFields unsampled =
+        HttpFields.build().put("traceparent", "00-" + TRACE_ID + "-b7ad6b7169203331-00");
+    assertThat(tracer.startServerSpan("f", unsampled).isRecording()).isFalse();
+
+    HttpFields sampled =
+        HttpFields.build().put("traceparent", "00-" + TRACE_ID + "-b7ad6b7169203331-01");
+    Span span = tracer.startServerSpan("f", sampled);
+    try (Span child = span.child("apply")) {
+      child.setAttribute("bytes", 3);
+    }
+    span.end(500, null);
+    tracer.stop();
+
+    assertThat(exported).hasSize(2);
+    Span child = exported.get(0);
+    assertThat(child.getName()).isEqualTo("apply");
+    assertThat(child.getParentSpanId()).isEqualTo(span.getSpanId());
+    assertThat(span.getTraceId()).isEqualTo(TRACE_ID);
+    assertThat(span.getParentSpanId()).isEqualTo("b7ad6b7169203331");
+    assertThat(span.getError()).isNotNull();
+    assertThat(tracer.getExported()).isEqualTo(2);
+  }
+}